@@ -0,0 +1,69 @@
+package edu.upc.epsevg.prop.oust.bench;
+
+import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.PlayerMove;
+import edu.upc.epsevg.prop.oust.players.HaroLin.PlayerMiniMax;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Búsqueda completa de {@link PlayerMiniMax} a profundidad fija sobre las
+ * {@link Posicions}. Entre jugadas solo se arrastra la historia de la
+ * ordenación; como se repite siempre la misma búsqueda, llega enseguida a
+ * un estado estable y el calentamiento lo absorbe.
+ *
+ * <p>El resumen que escribe {@code move} por consola se descarta mientras
+ * dura la medida.</p>
+ *
+ * @author jieke
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class CercaBench {
+
+    @Param({"obertura", "migjoc", "migjoc2", "captures"})
+    public String posicio;
+
+    @Param({"2", "3", "4"})
+    public int profunditat;
+
+    private GameStatus gs;
+    private PlayerMiniMax jugador;
+    private PrintStream consola;
+
+    @Setup
+    public void prepara() {
+        gs = Posicions.estat(Posicions.index(posicio));
+        jugador = new PlayerMiniMax(profunditat);
+        jugador.setLlibre(null);
+        consola = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void restaura() {
+        System.setOut(consola);
+    }
+
+    @Benchmark
+    public PlayerMove move() {
+        return jugador.move(gs);
+    }
+}
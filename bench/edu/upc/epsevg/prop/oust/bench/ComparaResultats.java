@@ -0,0 +1,152 @@
+package edu.upc.epsevg.prop.oust.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compara dos ficheros de resultados de JMH en CSV ({@code -rf csv}): la
+ * línea base y la medida nueva. Para cada benchmark y parámetros escribe
+ * las dos puntuaciones, la diferencia en porcentaje y si los intervalos de
+ * error se solapan; las filas de los perfiladores (por ejemplo
+ * {@code :gc.alloc.rate.norm} con {@code -prof gc}) se comparan igual.
+ *
+ * <p>Uso:</p>
+ * <pre>
+ *   java -cp build/bench/benchmarks.jar edu.upc.epsevg.prop.oust.bench.ComparaResultats base.csv nou.csv
+ * </pre>
+ *
+ * @author jieke
+ */
+public class ComparaResultats {
+
+    /**
+     * Una fila del CSV de JMH.
+     */
+    private static class Resultat {
+        final double puntuacio;
+        final double error;
+        final String unitat;
+
+        Resultat(double puntuacio, double error, String unitat) {
+            this.puntuacio = puntuacio;
+            this.error = error;
+            this.unitat = unitat;
+        }
+    }
+
+    /**
+     * Lee un CSV de JMH.
+     *
+     * @param fitxer fichero
+     * @return resultados por benchmark y parámetros, en el orden del fichero
+     * @throws IOException si no se puede leer o no es un CSV de JMH
+     */
+    static Map<String, Resultat> llegeix(String fitxer) throws IOException {
+        List<String> linies = Files.readAllLines(Paths.get(fitxer), StandardCharsets.UTF_8);
+        if (linies.isEmpty()) {
+            throw new IOException(fitxer + ": vacío");
+        }
+        List<String> capcalera = camps(linies.get(0));
+        int benchmark = capcalera.indexOf("Benchmark");
+        int puntuacio = capcalera.indexOf("Score");
+        int unitat = capcalera.indexOf("Unit");
+        int error = -1;
+        for (int i = 0; i < capcalera.size(); i++) {
+            if (capcalera.get(i).startsWith("Score Error")) {
+                error = i;
+            }
+        }
+        if (benchmark < 0 || puntuacio < 0 || unitat < 0 || error < 0) {
+            throw new IOException(fitxer + ": no es un CSV de JMH");
+        }
+        Map<String, Resultat> resultats = new LinkedHashMap<>();
+        for (String linia : linies.subList(1, linies.size())) {
+            if (linia.isBlank()) {
+                continue;
+            }
+            List<String> c = camps(linia);
+            StringBuilder clau = new StringBuilder(c.get(benchmark));
+            for (int i = 0; i < capcalera.size(); i++) {
+                if (capcalera.get(i).startsWith("Param: ") && i < c.size() && !c.get(i).isEmpty()) {
+                    clau.append(' ').append(capcalera.get(i).substring(7)).append('=').append(c.get(i));
+                }
+            }
+            resultats.put(clau.toString(), new Resultat(numero(c.get(puntuacio)),
+                    numero(c.get(error)), c.get(unitat)));
+        }
+        return resultats;
+    }
+
+    /**
+     * Separa una línea CSV con campos entre comillas.
+     */
+    private static List<String> camps(String linia) {
+        List<String> camps = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean cometes = false;
+        for (int i = 0; i < linia.length(); i++) {
+            char ch = linia.charAt(i);
+            if (ch == '"') {
+                if (cometes && i + 1 < linia.length() && linia.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else {
+                    cometes = !cometes;
+                }
+            } else if (ch == ',' && !cometes) {
+                camps.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(ch);
+            }
+        }
+        camps.add(actual.toString());
+        return camps;
+    }
+
+    private static double numero(String text) {
+        // JMH escribe NaN cuando no hay error (una sola muestra)
+        return text.isEmpty() ? Double.NaN : Double.parseDouble(text);
+    }
+
+    /**
+     * Nombre sin el paquete: {@code ReglesBench.getMovesTunned ...}.
+     */
+    private static String nom(String clau) {
+        int classe = clau.indexOf("Bench.");
+        return classe < 0 ? clau : clau.substring(clau.lastIndexOf('.', classe) + 1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: ComparaResultats base.csv nou.csv");
+            System.exit(2);
+        }
+        Map<String, Resultat> base = llegeix(args[0]);
+        Map<String, Resultat> nou = llegeix(args[1]);
+        System.out.println(String.format(Locale.ROOT, "%-60s %22s %22s %9s", "Benchmark", "Base", "Nuevo", "Cambio"));
+        for (Map.Entry<String, Resultat> e : nou.entrySet()) {
+            Resultat b = base.get(e.getKey());
+            Resultat n = e.getValue();
+            if (b == null) {
+                System.out.println(String.format(Locale.ROOT, "%-60s %22s %15.3f +- %-5.3g %9s %s",
+                        nom(e.getKey()), "-", n.puntuacio, n.error, "", n.unitat));
+                continue;
+            }
+            double canvi = b.puntuacio != 0 ? 100 * (n.puntuacio - b.puntuacio) / b.puntuacio : Double.NaN;
+            boolean solapen = Double.isNaN(b.error) || Double.isNaN(n.error)
+                    || Math.abs(n.puntuacio - b.puntuacio) <= b.error + n.error;
+            System.out.println(String.format(Locale.ROOT, "%-60s %15.3f +- %-5.3g %15.3f +- %-5.3g %+8.1f%% %s%s",
+                    nom(e.getKey()), b.puntuacio, b.error, n.puntuacio, n.error, canvi, n.unitat,
+                    solapen ? "" : "  *"));
+        }
+        System.out.println("* los intervalos de error no se solapan");
+    }
+}
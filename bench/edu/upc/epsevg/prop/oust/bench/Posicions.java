@@ -0,0 +1,74 @@
+package edu.upc.epsevg.prop.oust.bench;
+
+import edu.upc.epsevg.prop.oust.GameStatus;
+import java.awt.Point;
+
+/**
+ * Posiciones fijas (tablero de tamaño 7) sobre las que se miden los
+ * benchmarks. Salen de partidas de {@code PlayerMiniMax} de profundidad 3
+ * contra profundidad 2 y se guardan como la lista de tiradas desde el
+ * tablero vacío.
+ *
+ * <p>Se reconstruyen jugando las tiradas y no con
+ * {@code GameStatus(byte[][], PlayerType)}: ese constructor de la librería
+ * toma el lado del tablero como tamaño y lee fuera del array.</p>
+ *
+ * @author jieke
+ */
+public final class Posicions {
+
+    /** Tamaño del tablero de todas las posiciones. */
+    public static final int MIDA = 7;
+
+    /** Nombres, en el orden de {@link #estat(int)}. */
+    public static final String[] NOMS = {"obertura", "migjoc", "migjoc2", "captures"};
+
+    private static final String[] TIRADES = {
+        // 12 piedras, 6 y 6, 87 tiradas legales
+        "5,9 5,1 6,6 6,0 4,6 7,2 6,4 9,3 6,8 0,6 8,6 2,8",
+        // 22 piedras, 11 y 11, 60 tiradas legales
+        "5,9 5,1 6,6 6,0 4,6 7,2 6,4 9,3 6,8 0,6 8,6 2,8 4,4 6,12 8,8 11,5 2,5 12,7 7,10 3,0 "
+        + "10,8 1,0",
+        // 22 piedras, otra línea
+        "12,6 10,11 4,6 0,6 6,6 2,8 6,4 4,10 6,8 6,12 8,6 6,0 4,4 8,2 8,8 9,12 9,5 7,11 2,5 "
+        + "12,12 5,2 11,10",
+        // Tras una cadena larga de capturas: 3 piedras contra 31
+        "5,9 5,1 6,6 6,0 4,6 7,2 6,4 9,3 6,8 0,6 8,6 2,8 4,4 6,12 8,8 11,5 2,5 12,7 7,10 3,0 "
+        + "10,8 1,0 9,10 0,1 11,10 6,7 5,6 6,2 5,2 5,3 5,4 6,5 7,6 7,7 7,8 7,9 6,9 8,9 3,6 2,6 "
+        + "1,6 1,7 6,6 8,7 9,8 10,9 3,6 0,6 6,6 6,7 3,6 0,4 7,4 3,8 9,5 2,7 6,6 5,8 4,8 4,6 "
+        + "1,6 5,10 9,12 10,7"
+    };
+
+    private Posicions() {
+    }
+
+    /**
+     * Índice de una posición por su nombre.
+     *
+     * @param nom uno de {@link #NOMS}
+     * @return índice
+     */
+    public static int index(String nom) {
+        for (int i = 0; i < NOMS.length; i++) {
+            if (NOMS[i].equals(nom)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Posición desconocida: " + nom);
+    }
+
+    /**
+     * Construye una posición nueva.
+     *
+     * @param index índice en {@link #NOMS}
+     * @return estado del juego
+     */
+    public static GameStatus estat(int index) {
+        GameStatus gs = new GameStatus(MIDA);
+        for (String tirada : TIRADES[index].trim().split("\\s+")) {
+            String[] xy = tirada.split(",");
+            gs.placeStone(new Point(Integer.parseInt(xy[0]), Integer.parseInt(xy[1])));
+        }
+        return gs;
+    }
+}
@@ -0,0 +1,110 @@
+package edu.upc.epsevg.prop.oust.bench;
+
+import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import java.awt.Point;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operaciones de las reglas: las de {@link GameStatus} (la librería) y las
+ * de {@link GameStatusTunned}, que es lo que usan los jugadores.
+ *
+ * <p>Una colocación en {@link GameStatus} no se puede deshacer, así que
+ * {@link #placeStoneGameStatus} copia antes el estado; su coste propio es
+ * la resta con {@link #copiaGameStatus}.</p>
+ *
+ * @author jieke
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ReglesBench {
+
+    @Param({"obertura", "migjoc", "migjoc2", "captures"})
+    public String posicio;
+
+    private GameStatus gs;
+    private GameStatusTunned estat;
+    private GameStatusTunned desti;
+    private int[] moviments;
+    private Point tirada;
+    private int casella;
+
+    @Setup
+    public void prepara() {
+        gs = Posicions.estat(Posicions.index(posicio));
+        estat = new GameStatusTunned(gs);
+        desti = new GameStatusTunned(gs);
+        moviments = new int[estat.getCellCount()];
+        // Una tirada del medio de la lista, no siempre la primera casilla
+        List<Point> legals = gs.getMoves();
+        tirada = legals.get(legals.size() / 2);
+        casella = estat.toCell(tirada);
+    }
+
+    @Benchmark
+    public GameStatus copiaGameStatus() {
+        return new GameStatus(gs);
+    }
+
+    @Benchmark
+    public GameStatus placeStoneGameStatus() {
+        GameStatus copia = new GameStatus(gs);
+        copia.placeStone(tirada);
+        return copia;
+    }
+
+    @Benchmark
+    public List<Point> getMovesGameStatus() {
+        return gs.getMoves();
+    }
+
+    @Benchmark
+    public boolean isGameOverGameStatus() {
+        return gs.isGameOver();
+    }
+
+    @Benchmark
+    public GameStatusTunned copiaTunned() {
+        return new GameStatusTunned(estat);
+    }
+
+    @Benchmark
+    public GameStatusTunned copyFromTunned() {
+        desti.copyFrom(estat);
+        return desti;
+    }
+
+    @Benchmark
+    public long placeStoneUndoTunned() {
+        estat.placeStone(casella);
+        long clau = estat.getHash();
+        estat.undo();
+        return clau;
+    }
+
+    @Benchmark
+    public int getMovesTunned() {
+        return estat.getMoves(moviments);
+    }
+
+    @Benchmark
+    public boolean isGameOverTunned() {
+        return estat.isGameOver();
+    }
+}
@@ -0,0 +1,62 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import edu.upc.epsevg.prop.oust.bench.Posicions;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Función de evaluación de {@link PlayerMiniMax} sobre las
+ * {@link Posicions}. Está en el paquete del jugador porque
+ * {@code evaluar} no es pública.
+ *
+ * @author jieke
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class AvaluacioBench {
+
+    @Param({"obertura", "migjoc", "migjoc2", "captures"})
+    public String posicio;
+
+    private GameStatusTunned estat;
+    private PlayerMiniMax jugador;
+
+    @Setup
+    public void prepara() {
+        GameStatus gs = Posicions.estat(Posicions.index(posicio));
+        estat = new GameStatusTunned(gs);
+        jugador = new PlayerMiniMax(1);
+        jugador.setLlibre(null);
+        // Una jugada fija el color desde el que evalúa el jugador
+        PrintStream consola = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            jugador.move(gs);
+        } finally {
+            System.setOut(consola);
+        }
+    }
+
+    @Benchmark
+    public double evaluar() {
+        return jugador.evaluar(estat);
+    }
+}
@@ -0,0 +1,461 @@
+package edu.upc.epsevg.prop.oust;
+
+import edu.upc.epsevg.prop.oust.players.HaroLin.PlayerMiniMaxIDS;
+import java.awt.Point;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Re-analysis of the games of a game-record file (see
+ * {@link GameRecordWriter}): every position before a turn is rebuilt with
+ * {@link GameStatus#placeStone} and searched again by a
+ * {@link PlayerMiniMaxIDS} to a fixed depth or a fixed number of nodes.
+ *
+ * <p>The positions go to a pool of workers, one player per thread, so that
+ * all the cores are busy; several games are in flight at the same time and
+ * their reports are written in the order of the file.</p>
+ *
+ * <p>The evaluation of {@link PlayerMiniMaxIDS} is seen from the player who
+ * moves and gives it a clear advantage, so values are only compared
+ * between positions with the same player to move: v(t), the value of the
+ * position before turn t for its player, against v(t+2), the value before
+ * the next turn of the same player (or the result, if the game ends
+ * first). Reports:</p>
+ * <ul>
+ * <li><b>blunders.tsv</b>: turns with v(t) - v(t+2) of at least the blunder
+ *     threshold, unless they are the turn the search would play.</li>
+ * <li><b>swings.tsv</b>: turns with v(t+2) - v(t), seen from PLAYER1, of at
+ *     least the swing threshold either way.</li>
+ * <li><b>games.tsv</b>: one line per game with the decisive turn (the turn
+ *     of the loser after which the winner, to move, is always ahead) and
+ *     the biggest loss of each player.</li>
+ * </ul>
+ *
+ * <p>After every game the reports are flushed and the checkpoint file
+ * keeps the games done and the length of each report. A run started again
+ * on the same directory cuts the reports there and skips those games.</p>
+ *
+ * @author jieke
+ */
+public class GameAnalysis {
+
+    /** Value of a won position for the searches of {@link PlayerMiniMaxIDS}. */
+    public static final double WIN = 100000;
+
+    private static final int TT_MB = 32;
+    private static final String[] REPORTS = {"games.tsv", "blunders.tsv", "swings.tsv"};
+    private static final String[] HEADERS = {
+        "game\tplayer1\tplayer2\tresult\tturns\tdecisive_turn\tmax_loss1\tmax_loss2",
+        "game\tturn\tplayer\tname\tbefore\tafter\tloss\tbest_move\tplayed_move\tdepth\tnodes",
+        "game\tturn\tplayer\tname\tbefore\tafter\tswing"
+    };
+
+    private final Path records;
+    private final Path output;
+    private final int threads;
+    private int depth = 4;
+    private long nodes;
+    private double blunderThreshold = 200;
+    private double swingThreshold = 200;
+
+    /**
+     * A position to search, and the turn played from it.
+     */
+    private static class Position {
+        final GameStatus status;
+        final PlayerType player;
+        final List<Point> played;
+        Future<Search> search;
+
+        Position(GameStatus status, PlayerType player, List<Point> played) {
+            this.status = status;
+            this.player = player;
+            this.played = played;
+        }
+    }
+
+    /**
+     * Result of the search of a position.
+     */
+    private static class Search {
+        final double value;
+        final List<Point> best;
+        final int depth;
+        final long nodes;
+
+        Search(double value, List<Point> best, int depth, long nodes) {
+            this.value = value;
+            this.best = best;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * A game being analysed.
+     */
+    private static class Game {
+        final int index;
+        final String player1;
+        final String player2;
+        final PlayerType winner;
+        final List<Position> positions = new ArrayList<>();
+        // Winner of the replayed game, or the recorded one if it ended by forfeit
+        PlayerType finalWinner;
+
+        Game(int index, String player1, String player2, PlayerType winner) {
+            this.index = index;
+            this.player1 = player1;
+            this.player2 = player2;
+            this.winner = winner;
+        }
+
+        String name(PlayerType player) {
+            return player == PlayerType.PLAYER1 ? player1 : player2;
+        }
+    }
+
+    /**
+     * @param records game-record file
+     * @param output directory of the reports and the checkpoint
+     * @param threads workers (see {@link #defaultThreads()})
+     */
+    public GameAnalysis(Path records, Path output, int threads) {
+        this.records = records;
+        this.output = output;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return one worker per available processor
+     */
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Searches every position to a fixed depth (4 by default).
+     *
+     * @param depth depth of the searches
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+        this.nodes = 0;
+    }
+
+    /**
+     * Searches every position a fixed number of nodes, with iterative
+     * deepening, instead of a fixed depth. Depth 1 is always completed,
+     * even if it takes more nodes, so that every position has a value.
+     *
+     * @param nodes nodes per search
+     */
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @param threshold loss, in evaluation units, that makes a turn a blunder
+     */
+    public void setBlunderThreshold(double threshold) {
+        this.blunderThreshold = threshold;
+    }
+
+    /**
+     * @param threshold change of the evaluation reported as a swing
+     */
+    public void setSwingThreshold(double threshold) {
+        this.swingThreshold = threshold;
+    }
+
+    /**
+     * Analyses the games of the record file not analysed yet.
+     *
+     * @return games analysed in this run
+     * @throws IOException if the records can't be read or the reports written
+     */
+    public int start() throws IOException {
+        Files.createDirectories(output);
+        long[] checkpoint = readCheckpoint();
+        BufferedWriter[] reports = openReports(checkpoint);
+        int skip = (int) checkpoint[0];
+        AtomicInteger started = new AtomicInteger();
+        ThreadLocal<PlayerMiniMaxIDS> players = ThreadLocal.withInitial(this::newPlayer);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "analysis-" + started.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Game> inFlight = new ArrayDeque<>();
+        int done = skip;
+        long positions = 0;
+        long t0 = System.nanoTime();
+        try (GameRecordReader reader = new GameRecordReader(records)) {
+            int index = 0;
+            while (reader.nextGame()) {
+                index++;
+                if (index <= skip) {
+                    continue;
+                }
+                Game game = replay(index, reader);
+                for (Position p : game.positions) {
+                    p.search = pool.submit(() -> search(players.get(), p.status));
+                }
+                inFlight.add(game);
+                // Enough games in flight to keep the threads busy
+                while (inFlight.size() > 2 * threads || (!inFlight.isEmpty() && finished(inFlight.peek()))) {
+                    Game g = inFlight.poll();
+                    report(g, reports);
+                    done = g.index;
+                    positions += g.positions.size();
+                    checkpoint(done, reports);
+                    progress(done, positions, t0);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                Game g = inFlight.poll();
+                report(g, reports);
+                done = g.index;
+                positions += g.positions.size();
+                checkpoint(done, reports);
+                progress(done, positions, t0);
+            }
+        } finally {
+            pool.shutdownNow();
+            for (BufferedWriter w : reports) {
+                w.close();
+            }
+        }
+        return done - skip;
+    }
+
+    private PlayerMiniMaxIDS newPlayer() {
+        PlayerMiniMaxIDS player = new PlayerMiniMaxIDS(TT_MB);
+        player.setLlibre(null);
+        player.setTraca(false);
+        player.setRegistre(null);
+        // No time limit, and no exact endgames (its limit is a fraction of
+        // the time): only the depth or the nodes
+        player.setTempsPerJugada(24L * 3600 * 1000);
+        player.setPedresFinals(0);
+        if (nodes > 0) {
+            player.setMaxNodes(nodes);
+        } else {
+            player.setMaxDepth(depth);
+        }
+        return player;
+    }
+
+    private static Search search(PlayerMiniMaxIDS player, GameStatus status) {
+        PlayerMove move = player.move(new GameStatus(status));
+        return new Search(move.getH(), move.getPoints(), move.getMaxDepthReached(), move.getNumerOfNodesExplored());
+    }
+
+    /**
+     * Rebuilds the positions of the current game of the reader. A turn
+     * that can't be placed ends the game there.
+     */
+    private static Game replay(int index, GameRecordReader reader) throws IOException {
+        Game game = new Game(index, reader.getPlayer1(), reader.getPlayer2(), reader.getWinner());
+        GameStatus status = new GameStatus(reader.getSize());
+        try {
+            while (!status.isGameOver() && reader.nextTurn()) {
+                List<Point> played = new ArrayList<>(reader.getStoneCount());
+                for (int i = 0; i < reader.getStoneCount(); i++) {
+                    played.add(reader.getPoint(i));
+                }
+                game.positions.add(new Position(new GameStatus(status), status.getCurrentPlayer(), played));
+                for (Point p : played) {
+                    status.placeStone(p);
+                }
+                if (played.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            System.out.println("Analysis: game " + index + " can't be replayed: " + ex);
+        }
+        game.finalWinner = status.isGameOver() ? status.GetWinner() : game.winner;
+        return game;
+    }
+
+    private static boolean finished(Game game) {
+        for (Position p : game.positions) {
+            if (!p.search.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the reports of a game, waiting for its searches.
+     */
+    private void report(Game game, BufferedWriter[] reports) throws IOException {
+        int n = game.positions.size();
+        Search[] searches = new Search[n];
+        for (int t = 0; t < n; t++) {
+            try {
+                searches[t] = game.positions.get(t).search.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Analysis interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IOException("Analysis of game " + game.index + " failed", ex.getCause());
+            }
+        }
+        // value[t]: position before turn t, seen from PLAYER1; value[n]: the result
+        double[] value = new double[n + 1];
+        for (int t = 0; t < n; t++) {
+            value[t] = sign(game.positions.get(t).player) * clamp(searches[t].value);
+        }
+        value[n] = game.finalWinner == null ? 0 : sign(game.finalWinner) * WIN;
+
+        double[] maxLoss = new double[2];
+        int decisive = 0;
+        for (int t = 0; t < n; t++) {
+            Position p = game.positions.get(t);
+            double s = sign(p.player);
+            // Next position with the same player to move, or the result
+            double next = t + 2 < n ? value[t + 2] : value[n];
+            double loss = p.played.equals(searches[t].best) ? 0 : Math.max(0, s * (value[t] - next));
+            int who = p.player == PlayerType.PLAYER1 ? 0 : 1;
+            maxLoss[who] = Math.max(maxLoss[who], loss);
+            if (loss >= blunderThreshold) {
+                reports[1].write(String.format(Locale.ROOT, "%d\t%d\t%d\t%s\t%.0f\t%.0f\t%.0f\t%s\t%s\t%d\t%d",
+                        game.index, t + 1, who + 1, game.name(p.player), s * value[t], s * next, loss,
+                        points(searches[t].best), points(p.played), searches[t].depth, searches[t].nodes));
+                reports[1].newLine();
+            }
+            double swing = next - value[t];
+            if (Math.abs(swing) >= swingThreshold) {
+                reports[2].write(String.format(Locale.ROOT, "%d\t%d\t%d\t%s\t%.0f\t%.0f\t%+.0f",
+                        game.index, t + 1, who + 1, game.name(p.player), value[t], next, swing));
+                reports[2].newLine();
+            }
+            if (game.finalWinner == p.player && sign(p.player) * value[t] <= 0) {
+                // The winner, to move, was not ahead yet: it was decided by the next turn of the loser
+                decisive = Math.min(t + 2, n);
+            }
+        }
+        String result = game.winner == PlayerType.PLAYER1 ? "1-0" : game.winner == PlayerType.PLAYER2 ? "0-1" : "1/2-1/2";
+        reports[0].write(String.format(Locale.ROOT, "%d\t%s\t%s\t%s\t%d\t%d\t%.0f\t%.0f",
+                game.index, game.player1, game.player2, result, n, decisive, maxLoss[0], maxLoss[1]));
+        reports[0].newLine();
+    }
+
+    private static double sign(PlayerType player) {
+        return player == PlayerType.PLAYER1 ? 1 : -1;
+    }
+
+    private static double clamp(double value) {
+        return Math.max(-WIN, Math.min(WIN, value));
+    }
+
+    private static String points(List<Point> points) {
+        StringBuilder sb = new StringBuilder();
+        for (Point p : points) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(p.x).append(',').append(p.y);
+        }
+        return sb.length() > 0 ? sb.toString() : "-";
+    }
+
+    private static void progress(int done, long positions, long t0) {
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "Analysis: %d games, %d positions in %.1f s (%.1f positions/s)",
+                done, positions, seconds, positions / Math.max(seconds, 1e-9)));
+    }
+
+    /**
+     * @return games done and length of each report, all 0 without a checkpoint
+     */
+    private long[] readCheckpoint() throws IOException {
+        long[] checkpoint = new long[REPORTS.length + 1];
+        Path file = output.resolve("checkpoint");
+        if (Files.exists(file)) {
+            String[] f = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim().split("\\s+");
+            if (f.length != checkpoint.length) {
+                throw new IOException(file + ": invalid checkpoint");
+            }
+            for (int i = 0; i < f.length; i++) {
+                checkpoint[i] = Long.parseLong(f[i]);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Opens the reports to append, cut at the checkpoint; without one they
+     * start again with their header.
+     */
+    private BufferedWriter[] openReports(long[] checkpoint) throws IOException {
+        BufferedWriter[] reports = new BufferedWriter[REPORTS.length];
+        for (int i = 0; i < REPORTS.length; i++) {
+            Path file = output.resolve(REPORTS[i]);
+            if (checkpoint[0] > 0) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(checkpoint[i + 1]);
+                }
+                reports[i] = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            } else {
+                reports[i] = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                reports[i].write(HEADERS[i]);
+                reports[i].newLine();
+            }
+        }
+        return reports;
+    }
+
+    private void checkpoint(int done, BufferedWriter[] reports) throws IOException {
+        StringBuilder sb = new StringBuilder().append(done);
+        for (int i = 0; i < REPORTS.length; i++) {
+            reports[i].flush();
+            sb.append(' ').append(Files.size(output.resolve(REPORTS[i])));
+        }
+        Path tmp = output.resolve("checkpoint.tmp");
+        Files.write(tmp, sb.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, output.resolve("checkpoint"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GameAnalysis records.oust directory [-d depth | -n nodes] [-t threads]");
+            System.exit(2);
+        }
+        int threads = defaultThreads();
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-t")) {
+                threads = Integer.parseInt(args[i + 1]);
+            }
+        }
+        GameAnalysis analysis = new GameAnalysis(Paths.get(args[0]), Paths.get(args[1]), threads);
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-d")) {
+                analysis.setDepth(Integer.parseInt(args[i + 1]));
+            } else if (args[i].equals("-n")) {
+                analysis.setNodes(Long.parseLong(args[i + 1]));
+            }
+        }
+        System.out.println("Analysis: " + analysis.start() + " games analysed");
+    }
+}
@@ -0,0 +1,323 @@
+package edu.upc.epsevg.prop.oust;
+
+import java.awt.Point;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a game-record file written by {@link GameRecordWriter}, one game
+ * and one turn at a time:
+ *
+ * <pre>
+ *   try (GameRecordReader r = new GameRecordReader(file)) {
+ *       while (r.nextGame()) {
+ *           while (r.nextTurn()) {
+ *               for (int i = 0; i &lt; r.getStoneCount(); i++) {
+ *                   ... r.getCell(i) ...
+ *               }
+ *           }
+ *       }
+ *   }
+ * </pre>
+ *
+ * <p>Only the current game is in memory, in buffers that are reused, so
+ * files of millions of games are read with constant memory. The names of
+ * the players are decoded only when asked for, and reused while they
+ * don't change. A game cut at the end of the file (an interrupted writer)
+ * is taken as the end of the file.</p>
+ *
+ * @author jieke
+ */
+public class GameRecordReader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(1 << 16);
+    private long position;
+
+    // Current game
+    private byte[] game = new byte[1024];
+    private int length;
+    private int next;
+    private int size;
+    private boolean stats;
+    private PlayerType winner;
+    private int turnCount;
+    private int turn;
+    private final Name name1 = new Name();
+    private final Name name2 = new Name();
+    private MyStatus cells;
+
+    // Current turn
+    private int[] stones = new int[32];
+    private int stoneCount;
+    private long nodes;
+    private int depth;
+    private long thinkMicros;
+
+    /**
+     * @param file record file
+     * @throws IOException if the file can't be read or is not a record file
+     */
+    public GameRecordReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        in.limit(0);
+        byte[] magic = new byte[GameRecordWriter.MAGIC.length];
+        if (!read(magic, magic.length) || !Arrays.equals(magic, GameRecordWriter.MAGIC)) {
+            channel.close();
+            throw new IOException(file + ": not an Oust game-record file");
+        }
+        position = magic.length;
+    }
+
+    /**
+     * Moves to the next game, skipping the turns not read of the current one.
+     *
+     * @return false at the end of the file
+     * @throws IOException if the file can't be read or a game is corrupt
+     */
+    public boolean nextGame() throws IOException {
+        long bytes = 0;
+        int shift = 0;
+        int b;
+        int prefix = 0;
+        do {
+            b = readByte();
+            if (b < 0) {
+                return false;
+            }
+            prefix++;
+            bytes |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        if ((b & 0x80) != 0 || bytes > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt game record at byte " + position);
+        }
+        length = (int) bytes;
+        if (game.length < length) {
+            game = new byte[Math.max(length, 2 * game.length)];
+        }
+        if (!read(game, length)) {
+            return false;
+        }
+        position += prefix + length;
+        next = 0;
+        size = varint();
+        stats = (nextByte() & GameRecordWriter.FLAG_STATS) != 0;
+        name1.read();
+        name2.read();
+        int result = nextByte();
+        winner = result == 1 ? PlayerType.PLAYER1 : result == 2 ? PlayerType.PLAYER2 : null;
+        turnCount = varint();
+        turn = 0;
+        if (cells == null || cells.getSize() != size) {
+            cells = new MyStatus(size);
+        }
+        return true;
+    }
+
+    /**
+     * Moves to the next turn of the current game.
+     *
+     * @return false after the last turn
+     * @throws IOException if the game is corrupt
+     */
+    public boolean nextTurn() throws IOException {
+        if (turn >= turnCount) {
+            return false;
+        }
+        turn++;
+        stoneCount = varint();
+        if (stones.length < stoneCount) {
+            stones = new int[Math.max(stoneCount, 2 * stones.length)];
+        }
+        for (int i = 0; i < stoneCount; i++) {
+            stones[i] = varint();
+        }
+        if (stats) {
+            nodes = varlong();
+            depth = varint();
+            thinkMicros = varlong();
+        }
+        return true;
+    }
+
+    /**
+     * @return bytes of the file up to the end of the last game read
+     */
+    public long position() {
+        return position;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getPlayer1() {
+        return name1.get();
+    }
+
+    public String getPlayer2() {
+        return name2.get();
+    }
+
+    /**
+     * @return the winner, or null for a tie
+     */
+    public PlayerType getWinner() {
+        return winner;
+    }
+
+    public boolean hasStats() {
+        return stats;
+    }
+
+    public int getTurnCount() {
+        return turnCount;
+    }
+
+    /**
+     * @return player of the current turn
+     */
+    public PlayerType getPlayer() {
+        return (turn & 1) == 1 ? PlayerType.PLAYER1 : PlayerType.PLAYER2;
+    }
+
+    /**
+     * @return stones placed in the current turn (0 if the player didn't move)
+     */
+    public int getStoneCount() {
+        return stoneCount;
+    }
+
+    /**
+     * @param i stone of the current turn
+     * @return its cell of {@link MyStatus}
+     */
+    public int getCell(int i) {
+        if (i >= stoneCount) {
+            throw new IndexOutOfBoundsException("Stone " + i + " of " + stoneCount);
+        }
+        return stones[i];
+    }
+
+    /**
+     * @param i stone of the current turn
+     * @return its point on the board
+     */
+    public Point getPoint(int i) {
+        return cells.toPoint(getCell(i));
+    }
+
+    /** @return nodes of the current turn (0 without stats) */
+    public long getNodes() {
+        return stats ? nodes : 0;
+    }
+
+    /** @return depth of the current turn (0 without stats) */
+    public int getDepth() {
+        return stats ? depth : 0;
+    }
+
+    /** @return thinking time of the current turn in microseconds (0 without stats) */
+    public long getThinkMicros() {
+        return stats ? thinkMicros : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int readByte() throws IOException {
+        if (!in.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return in.get() & 0xFF;
+    }
+
+    /**
+     * @return false if the file ends before <code>n</code> bytes
+     */
+    private boolean read(byte[] dest, int n) throws IOException {
+        int done = 0;
+        while (done < n) {
+            if (!in.hasRemaining() && !fill()) {
+                return false;
+            }
+            int k = Math.min(n - done, in.remaining());
+            in.get(dest, done, k);
+            done += k;
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        in.clear();
+        int n = channel.read(in);
+        in.flip();
+        return n > 0;
+    }
+
+    private int nextByte() throws IOException {
+        if (next >= length) {
+            throw new EOFException("Corrupt game record before byte " + position);
+        }
+        return game[next++] & 0xFF;
+    }
+
+    private int varint() throws IOException {
+        long v = varlong();
+        if (v > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt game record before byte " + position);
+        }
+        return (int) v;
+    }
+
+    private long varlong() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = nextByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Corrupt game record before byte " + position);
+    }
+
+    /**
+     * Name of a player: where it is in the current game and the last one
+     * decoded.
+     */
+    private class Name {
+
+        private int offset;
+        private int bytes;
+        private byte[] last = new byte[0];
+        private String value = "";
+
+        void read() throws IOException {
+            bytes = varint();
+            offset = next;
+            if (bytes > length - next) {
+                throw new EOFException("Corrupt game record before byte " + position);
+            }
+            next += bytes;
+        }
+
+        String get() {
+            if (!Arrays.equals(last, 0, last.length, game, offset, offset + bytes)) {
+                last = Arrays.copyOfRange(game, offset, offset + bytes);
+                value = new String(last, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+    }
+}
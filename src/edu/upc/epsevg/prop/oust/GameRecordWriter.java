@@ -0,0 +1,241 @@
+package edu.upc.epsevg.prop.oust;
+
+import java.awt.Point;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Appends games to a binary game-record file.
+ *
+ * <p>Format (all integers are unsigned LEB128 varints):</p>
+ * <pre>
+ * file   = MAGIC game*
+ * game   = length body                      length of body in bytes
+ * body   = size flags name1 name2 result turns turn*
+ * flags  = byte, bit 0: turns have stats
+ * name   = length UTF-8 bytes
+ * result = byte, 0 tie (or unknown), 1 PLAYER1, 2 PLAYER2
+ * turn   = count cell* [nodes depth thinkMicros]
+ * </pre>
+ *
+ * <p>A turn is a {@link PlayerMove}: the stones placed by a player, the
+ * captures and the final non-capturing one, as cells of {@link MyStatus}
+ * (row order). Turns alternate, starting with PLAYER1. A game takes a few
+ * bytes per stone, and the length prefix lets a reader skip it without
+ * decoding it.</p>
+ *
+ * <p>Every game is built apart with {@link #begin} and written in one piece
+ * by {@link Game#end}, so several games can be recorded at the same time
+ * through the same writer. Writes go through a buffer to a file channel;
+ * {@link #flush()} or {@link #close()} empty it.</p>
+ *
+ * @author jieke
+ */
+public class GameRecordWriter implements Closeable {
+
+    static final byte[] MAGIC = {'O', 'U', 'S', 'T', 'R', 'E', 'C', 1};
+
+    static final int FLAG_STATS = 1;
+
+    private static final int BUFFER = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+
+    private GameRecordWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a record file to append games. A new file gets the magic; in an
+     * existing one, a game cut by an interruption at the end is dropped.
+     *
+     * @param file record file
+     * @return the writer
+     * @throws IOException if the file can't be opened or is not a record file
+     */
+    public static GameRecordWriter open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(MAGIC));
+            } else {
+                long end;
+                try (GameRecordReader reader = new GameRecordReader(file)) {
+                    while (reader.nextGame()) {
+                        // Only the end of the last whole game is needed
+                    }
+                    end = reader.position();
+                }
+                channel.truncate(end);
+            }
+            channel.position(channel.size());
+            return new GameRecordWriter(channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Starts a game.
+     *
+     * @param size board size
+     * @param player1 name of PLAYER1
+     * @param player2 name of PLAYER2
+     * @param stats true if the turns have nodes, depth and thinking time
+     * @return the game, to add its turns
+     */
+    public Game begin(int size, String player1, String player2, boolean stats) {
+        return new Game(size, player1, player2, stats);
+    }
+
+    private synchronized void write(byte[] game, int length) throws IOException {
+        if (buffer.remaining() < length + 5) {
+            flush();
+        }
+        if (length + 5 > BUFFER) {
+            ByteBuffer big = ByteBuffer.allocate(length + 5);
+            putVarint(big, length);
+            big.put(game, 0, length).flip();
+            while (big.hasRemaining()) {
+                channel.write(big);
+            }
+            return;
+        }
+        putVarint(buffer, length);
+        buffer.put(game, 0, length);
+    }
+
+    /**
+     * Writes the buffered games to the file.
+     *
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * A game being recorded. Not thread safe: it belongs to the thread that
+     * plays the game.
+     */
+    public class Game {
+
+        private final MyStatus cells;
+        private final boolean stats;
+        private final byte[] header;
+        private byte[] turns = new byte[256];
+        private int length;
+        private int turnCount;
+        private boolean ended;
+
+        private Game(int size, String player1, String player2, boolean stats) {
+            this.cells = new MyStatus(size);
+            this.stats = stats;
+            byte[] name1 = player1.getBytes(StandardCharsets.UTF_8);
+            byte[] name2 = player2.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer h = ByteBuffer.allocate(name1.length + name2.length + 16);
+            putVarint(h, size);
+            h.put((byte) (stats ? FLAG_STATS : 0));
+            putVarint(h, name1.length);
+            h.put(name1);
+            putVarint(h, name2.length);
+            h.put(name2);
+            header = Arrays.copyOf(h.array(), h.position());
+        }
+
+        /**
+         * Adds a turn without stats.
+         *
+         * @param points stones placed, in order (empty if the player didn't move)
+         */
+        public void turn(List<Point> points) {
+            turn(points, 0, 0, 0);
+        }
+
+        /**
+         * Adds a turn. The stats are ignored if the game was started without them.
+         *
+         * @param points stones placed, in order (empty if the player didn't move)
+         * @param nodes nodes explored
+         * @param depth maximum depth reached
+         * @param thinkMicros thinking time, in microseconds
+         */
+        public void turn(List<Point> points, long nodes, int depth, long thinkMicros) {
+            ByteBuffer t = reserve(5 * (points.size() + 1) + 25);
+            putVarint(t, points.size());
+            for (Point p : points) {
+                int cell = cells.toCell(p);
+                if (cell < 0) {
+                    throw new IllegalArgumentException("Point outside the board: " + p);
+                }
+                putVarint(t, cell);
+            }
+            if (stats) {
+                putVarint(t, Math.max(0, nodes));
+                putVarint(t, Math.max(0, depth));
+                putVarint(t, Math.max(0, thinkMicros));
+            }
+            length = t.position();
+            turnCount++;
+        }
+
+        private ByteBuffer reserve(int bytes) {
+            if (turns.length - length < bytes) {
+                turns = Arrays.copyOf(turns, Math.max(2 * turns.length, length + bytes));
+            }
+            ByteBuffer t = ByteBuffer.wrap(turns);
+            t.position(length);
+            return t;
+        }
+
+        /**
+         * Ends the game and writes it.
+         *
+         * @param winner winner, or null for a tie
+         * @throws IOException if the file can't be written
+         */
+        public void end(PlayerType winner) throws IOException {
+            if (ended) {
+                throw new IllegalStateException("Game already ended");
+            }
+            ended = true;
+            ByteBuffer game = ByteBuffer.allocate(header.length + 6 + length);
+            game.put(header);
+            game.put((byte) (winner == PlayerType.PLAYER1 ? 1 : winner == PlayerType.PLAYER2 ? 2 : 0));
+            putVarint(game, turnCount);
+            game.put(turns, 0, length);
+            write(game.array(), game.position());
+        }
+    }
+}
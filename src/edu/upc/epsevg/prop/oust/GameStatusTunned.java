@@ -1,26 +1,463 @@
-
 package edu.upc.epsevg.prop.oust;
 
-import java.awt.Point;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
+ * Estado de juego para la búsqueda: un {@link MyStatus} que permite deshacer
+ * tiradas con {@link #undo()}, de modo que todo el árbol se recorre sobre un
+ * único objeto en lugar de copiar el tablero en cada nodo.
+ *
+ * <p>Cada {@link #placeStone(int)} apila la casilla, las piedras capturadas
+ * (como máscara de bits), el jugador que tenía el turno y el ganador. La pila
+ * se reserva al crear el estado y solo crece si la búsqueda la desborda.</p>
+ *
+ * <p>También mantiene una clave Zobrist de 64 bits de la posición (piedras y
+ * jugador con el turno), actualizada de forma incremental en cada colocación
+ * y captura y restaurada desde la pila al deshacer.</p>
+ *
+ * <p>Con {@link #activaSimetries()} mantiene además, igual de incremental,
+ * la clave de la posición transformada por cada una de las 12
+ * {@link Simetries}; la menor es la clave canónica, la misma para todas
+ * las posiciones simétricas.</p>
+ *
+ * <p>Los términos de la evaluación (control del centro y casillas libres de
+ * cada jugador) se actualizan piedra a piedra en cada colocación, captura y
+ * deshacer, de modo que evaluar una hoja no recorre el tablero.</p>
  *
  * @author Usuari
  */
-public class GameStatusTunned extends GameStatus{
-    
+public class GameStatusTunned extends MyStatus {
+
+    private static final int CAPACITAT_INICIAL = 256;
+    private static final int MAX_CASELLES = 3 * 31 * 31 - 3 * 31 + 1;
+
+    /** Claves Zobrist por jugador y casilla; la semilla es fija para que sean estables entre ejecuciones. */
+    private static final long[][] ZOBRIST = new long[2][MAX_CASELLES];
+    private static final long ZOBRIST_TORN;
+
+    static {
+        SplittableRandom rnd = new SplittableRandom(0x0057L);
+        for (int p = 0; p < 2; p++) {
+            for (int c = 0; c < MAX_CASELLES; c++) {
+                ZOBRIST[p][c] = rnd.nextLong();
+            }
+        }
+        ZOBRIST_TORN = rnd.nextLong();
+    }
+
+    private long hash;
+    private int nivell;
+    private int[] pilaCasella;
+    private int[] pilaEstat;
+    private long[] pilaCapturades;
+    private long[] pilaHash;
+
+    // Claves de las posiciones simétricas (null si no están activadas)
+    private Simetries simetries;
+    private long[] hashSimetric;
+    private long[] pilaHashSimetric;
+
+    // Estado incremental de la evaluación
+    private int[] pesCentre;
+    private int[][] veinsPropis;
+    private long[] ocupades;
+    private final int[] controlCentre = new int[2];
+    private final int[] lliures = new int[2];
+
     public GameStatusTunned(GameStatus gs) {
         super(gs);
+        reserva(CAPACITAT_INICIAL);
+        recalcula();
+    }
+
+    public GameStatusTunned(MyStatus other) {
+        super(other.getSize());
+        reserva(CAPACITAT_INICIAL);
+        copyFrom(other);
+    }
+
+    public GameStatusTunned(int n) {
+        super(n);
+        reserva(CAPACITAT_INICIAL);
+        recalcula();
+    }
+
+    private void reserva(int capacitat) {
+        pilaCasella = new int[capacitat];
+        pilaEstat = new int[capacitat];
+        pilaCapturades = new long[capacitat * words];
+        pilaHash = new long[capacitat];
+
+        int n = geo.n;
+        int centre = n - 1;
+        pesCentre = new int[geo.cells];
+        for (int c = 0; c < geo.cells; c++) {
+            pesCentre[c] = n - (Math.abs(geo.row[c] - centre) + Math.abs(geo.col[c] - centre));
+        }
+        veinsPropis = new int[2][geo.cells];
+        ocupades = new long[words];
+    }
+
+    /**
+     * Recalcula desde cero la clave Zobrist y los términos de evaluación.
+     */
+    private void recalcula() {
+        hash = calculaHash();
+        if (simetries != null) {
+            calculaHashSimetric();
+        }
+        Arrays.fill(veinsPropis[0], 0);
+        Arrays.fill(veinsPropis[1], 0);
+        Arrays.fill(ocupades, 0);
+        controlCentre[0] = controlCentre[1] = 0;
+        lliures[0] = lliures[1] = geo.cells;
+        for (int p = 0; p < 2; p++) {
+            for (int w = 0; w < words; w++) {
+                long s = stones[p][w];
+                while (s != 0) {
+                    afegeixPedra(p, (w << 6) | Long.numberOfTrailingZeros(s));
+                    s &= s - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Control del centro: suma, sobre las piedras del jugador, de
+     * {@code n - (|fila-centro| + |columna-centro|)}.
+     *
+     * @param player jugador
+     * @return control del centro del jugador
+     */
+    public int getCentreControl(PlayerType player) {
+        return controlCentre[player.to_01()];
+    }
+
+    /**
+     * Casillas vacías sin ninguna piedra propia al lado, es decir, donde el
+     * jugador siempre puede colocar sin capturar. Es una estimación barata de
+     * la movilidad (no cuenta las capturas).
+     *
+     * @param player jugador
+     * @return número de casillas libres del jugador
+     */
+    public int getFreeCells(PlayerType player) {
+        return lliures[player.to_01()];
+    }
+
+    /**
+     * Actualiza los términos de evaluación al poner una piedra en una casilla
+     * que el estado incremental ve vacía.
+     */
+    private void afegeixPedra(int p, int cell) {
+        int[] propis = veinsPropis[p];
+        if (propis[cell] == 0) lliures[p]--;
+        if (veinsPropis[1 - p][cell] == 0) lliures[1 - p]--;
+        ocupades[cell >>> 6] |= 1L << cell;
+        for (int v : geo.neigh[cell]) {
+            if (++propis[v] == 1 && (ocupades[v >>> 6] & (1L << v)) == 0) {
+                lliures[p]--;
+            }
+        }
+        controlCentre[p] += pesCentre[cell];
+    }
+
+    /**
+     * Actualiza los términos de evaluación al quitar una piedra.
+     */
+    private void treuPedra(int p, int cell) {
+        int[] propis = veinsPropis[p];
+        ocupades[cell >>> 6] &= ~(1L << cell);
+        if (propis[cell] == 0) lliures[p]++;
+        if (veinsPropis[1 - p][cell] == 0) lliures[1 - p]++;
+        for (int v : geo.neigh[cell]) {
+            if (--propis[v] == 0 && (ocupades[v >>> 6] & (1L << v)) == 0) {
+                lliures[p]++;
+            }
+        }
+        controlCentre[p] -= pesCentre[cell];
+    }
+
+    /**
+     * Clave Zobrist de la posición actual (piedras de los dos jugadores y
+     * jugador con el turno).
+     *
+     * @return clave de 64 bits
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Clave Zobrist de una piedra.
+     *
+     * @param player 0 (PLAYER1) o 1 (PLAYER2)
+     * @param cell índice de la casilla
+     * @return clave de 64 bits
+     */
+    public static long zobrist(int player, int cell) {
+        return ZOBRIST[player][cell];
+    }
+
+    private long calculaHash() {
+        long h = turn == 1 ? ZOBRIST_TORN : 0;
+        for (int p = 0; p < 2; p++) {
+            for (int w = 0; w < words; w++) {
+                long s = stones[p][w];
+                while (s != 0) {
+                    h ^= ZOBRIST[p][(w << 6) | Long.numberOfTrailingZeros(s)];
+                    s &= s - 1;
+                }
+            }
+        }
+        return h;
+    }
+
+    private void calculaHashSimetric() {
+        for (int s = 0; s < Simetries.NUM_SIMETRIES; s++) {
+            int[] perm = simetries.permutacio(s);
+            long h = turn == 1 ? ZOBRIST_TORN : 0;
+            for (int p = 0; p < 2; p++) {
+                for (int w = 0; w < words; w++) {
+                    long st = stones[p][w];
+                    while (st != 0) {
+                        h ^= ZOBRIST[p][perm[(w << 6) | Long.numberOfTrailingZeros(st)]];
+                        st &= st - 1;
+                    }
+                }
+            }
+            hashSimetric[s] = h;
+        }
+    }
+
+    /**
+     * Empieza a mantener las claves de las 12 posiciones simétricas (cuesta
+     * doce operaciones por piedra en lugar de una). Vacía la pila de
+     * deshacer.
+     */
+    public void activaSimetries() {
+        if (simetries != null) {
+            return;
+        }
+        simetries = Simetries.de(geo.n);
+        hashSimetric = new long[Simetries.NUM_SIMETRIES];
+        pilaHashSimetric = new long[pilaHash.length * Simetries.NUM_SIMETRIES];
+        nivell = 0;
+        calculaHashSimetric();
+    }
+
+    /**
+     * Indica si la posición queda igual con alguna simetría que no sea la
+     * identidad (piedras de cada jugador en su imagen). No hace falta
+     * {@link #activaSimetries()}.
+     *
+     * @return cierto si la posición es simétrica
+     */
+    public boolean esSimetrica() {
+        Simetries sim = Simetries.de(geo.n);
+        for (int s = 1; s < Simetries.NUM_SIMETRIES; s++) {
+            int[] perm = sim.permutacio(s);
+            boolean igual = true;
+            for (int p = 0; p < 2 && igual; p++) {
+                for (int w = 0; w < words && igual; w++) {
+                    long st = stones[p][w];
+                    while (st != 0) {
+                        int c = perm[(w << 6) | Long.numberOfTrailingZeros(st)];
+                        if ((stones[p][c >>> 6] & (1L << c)) == 0) {
+                            igual = false;
+                            break;
+                        }
+                        st &= st - 1;
+                    }
+                }
+            }
+            if (igual) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clave canónica: la menor de las claves de las 12 posiciones simétricas.
+     * Requiere {@link #activaSimetries()}.
+     *
+     * @return clave de 64 bits, igual para todas las posiciones simétricas
+     */
+    public long getHashCanonic() {
+        return hashSimetric[getSimetriaCanonica()];
+    }
+
+    /**
+     * Simetría que lleva la posición actual a la canónica. Las casillas se
+     * pasan a la orientación canónica con {@link Simetries#aplica} y se
+     * devuelven con {@link Simetries#desfa}. Requiere
+     * {@link #activaSimetries()}.
+     *
+     * @return simetría (0..11)
+     */
+    public int getSimetriaCanonica() {
+        int millor = 0;
+        for (int s = 1; s < Simetries.NUM_SIMETRIES; s++) {
+            if (hashSimetric[s] < hashSimetric[millor]) {
+                millor = s;
+            }
+        }
+        return millor;
+    }
+
+    /**
+     * Tablas de simetrías del tablero, o {@code null} si no están activadas.
+     *
+     * @return simetrías
+     */
+    public Simetries getSimetries() {
+        return simetries;
+    }
+
+    /**
+     * Copia el estado de otro y vacía la pila de deshacer.
+     *
+     * @param other estado a copiar
+     */
+    @Override
+    public void copyFrom(MyStatus other) {
+        super.copyFrom(other);
+        nivell = 0;
+        recalcula();
     }
 
     @Override
-    public void placeStone(Point point) {
-        super.placeStone(point); 
-        //...
-        // les vostes cosetes...
-        
-        Dir d =Dir.DOWN_L;
-    }
-    
-    
+    public void placeStone(int cell) {
+        // Estado previo: turno en el bit 0 y ganador+1 en los bits superiores
+        int previ = turn | ((winner + 1) << 1);
+        super.placeStone(cell);
+        long previHash = hash;
+        int me = previ & 1;
+        long[] z = ZOBRIST[1 - me];
+        for (int w = 0; w < words; w++) {
+            long c = captured[w];
+            while (c != 0) {
+                int k = (w << 6) | Long.numberOfTrailingZeros(c);
+                hash ^= z[k];
+                treuPedra(1 - me, k);
+                c &= c - 1;
+            }
+        }
+        hash ^= ZOBRIST[me][cell];
+        afegeixPedra(me, cell);
+        if (turn != me) {
+            hash ^= ZOBRIST_TORN;
+        }
+        if (simetries != null) {
+            if ((nivell + 1) * Simetries.NUM_SIMETRIES > pilaHashSimetric.length) {
+                pilaHashSimetric = Arrays.copyOf(pilaHashSimetric, pilaHashSimetric.length * 2);
+            }
+            System.arraycopy(hashSimetric, 0, pilaHashSimetric, nivell * Simetries.NUM_SIMETRIES,
+                    Simetries.NUM_SIMETRIES);
+            actualitzaSimetries(me, cell, turn != me);
+        }
+
+        if (nivell == pilaCasella.length) {
+            int capacitat = nivell * 2;
+            pilaCasella = Arrays.copyOf(pilaCasella, capacitat);
+            pilaEstat = Arrays.copyOf(pilaEstat, capacitat);
+            pilaCapturades = Arrays.copyOf(pilaCapturades, capacitat * words);
+            pilaHash = Arrays.copyOf(pilaHash, capacitat);
+        }
+        pilaCasella[nivell] = cell;
+        pilaEstat[nivell] = previ;
+        System.arraycopy(captured, 0, pilaCapturades, nivell * words, words);
+        pilaHash[nivell] = previHash;
+        nivell++;
+    }
+
+    /**
+     * Deshace la última tirada hecha con {@link #placeStone(int)}, dejando el
+     * estado exactamente como estaba (piedras, turno y ganador).
+     *
+     * @throws IllegalStateException si no hay ninguna tirada que deshacer
+     */
+    public void undo() {
+        if (nivell == 0) {
+            throw new IllegalStateException("No hi ha cap tirada per desfer");
+        }
+        nivell--;
+        int previ = pilaEstat[nivell];
+        int me = previ & 1;
+        int cell = pilaCasella[nivell];
+
+        stones[me][cell >>> 6] &= ~(1L << cell);
+        count[me]--;
+        treuPedra(me, cell);
+        long[] opp = stones[1 - me];
+        int base = nivell * words;
+        for (int w = 0; w < words; w++) {
+            long c = pilaCapturades[base + w];
+            opp[w] |= c;
+            count[1 - me] += Long.bitCount(c);
+            while (c != 0) {
+                afegeixPedra(1 - me, (w << 6) | Long.numberOfTrailingZeros(c));
+                c &= c - 1;
+            }
+        }
+        turn = me;
+        winner = (previ >> 1) - 1;
+        hash = pilaHash[nivell];
+        if (simetries != null) {
+            System.arraycopy(pilaHashSimetric, nivell * Simetries.NUM_SIMETRIES, hashSimetric, 0,
+                    Simetries.NUM_SIMETRIES);
+        }
+    }
+
+    /**
+     * Aplica a las claves simétricas la tirada que acaba de hacerse: las
+     * capturas (aún en {@code captured}), la piedra y el cambio de turno.
+     */
+    private void actualitzaSimetries(int me, int cell, boolean canviTorn) {
+        long[] z = ZOBRIST[1 - me];
+        long[] propi = ZOBRIST[me];
+        for (int s = 0; s < Simetries.NUM_SIMETRIES; s++) {
+            int[] perm = simetries.permutacio(s);
+            long h = hashSimetric[s] ^ propi[perm[cell]];
+            for (int w = 0; w < words; w++) {
+                long c = captured[w];
+                while (c != 0) {
+                    h ^= z[perm[(w << 6) | Long.numberOfTrailingZeros(c)]];
+                    c &= c - 1;
+                }
+            }
+            hashSimetric[s] = canviTorn ? h ^ ZOBRIST_TORN : h;
+        }
+    }
+
+    /**
+     * Indica si la última tirada hecha con {@link #placeStone(int)} capturó
+     * alguna piedra, es decir, si el jugador con el turno está a media
+     * cadena de capturas.
+     *
+     * @return cierto si la última tirada capturó; falso si no hay ninguna
+     */
+    public boolean lastMoveCaptured() {
+        if (nivell == 0) {
+            return false;
+        }
+        int base = (nivell - 1) * words;
+        for (int w = 0; w < words; w++) {
+            if (pilaCapturades[base + w] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Número de tiradas que se pueden deshacer.
+     *
+     * @return profundidad de la pila de deshacer
+     */
+    public int getUndoDepth() {
+        return nivell;
+    }
 }
@@ -6,11 +6,26 @@ import edu.upc.epsevg.prop.oust.*;
 import edu.upc.epsevg.prop.oust.players.HumanPlayer;
 import edu.upc.epsevg.prop.oust.players.RandomPlayer;
 import java.awt.Point;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.lang.ref.WeakReference;
 
 import java.util.ArrayList;
-import java.util.concurrent.Semaphore;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,23 +36,44 @@ import java.util.logging.Logger;
 public class HeadlessGame {
 
     private IPlayer players[];
-    private GameStatus status;
+    private Supplier<IPlayer> factory1;
+    private Supplier<IPlayer> factory2;
+    private int concurrency;
     private int gameCount;
     private int timeout;
     private int size;
+    private boolean gcBetweenMoves;
+    private GameRecordWriter recorder;
+
+    private static final long WAIT_EXTRA_TIME = 2000;
+    /** Threads that run the moves, reused by every move of every game. */
+    private static final ExecutorService MOVES = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "move-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /** Output of the game played by the current thread (and the threads it starts). */
+    private static final InheritableThreadLocal<ByteArrayOutputStream> GAME_OUTPUT = new InheritableThreadLocal<>();
+    private static PrintStream console;
     
     public static void main(String[] args) {
 
-
-        IPlayer player1 = new MalaOustiaPlayer();        
-        IPlayer player2 = new MOustValuablePlayer();
+        // Each game gets its own players; one core per player
+        Supplier<IPlayer> player1 = MalaOustiaPlayer::new;
+        Supplier<IPlayer> player2 = MOustValuablePlayer::new;
+        int concurrency = defaultConcurrency();
         
-        
-        HeadlessGame game1 = new HeadlessGame(player1, player2, 7, 3/*s timeout*/, 5/*games*/);
+        HeadlessGame game1 = new HeadlessGame(player1, player2, 7, 3/*s timeout*/, 5/*games*/, concurrency);
         GameResult gr1 = game1.start();
         System.out.println(gr1);
         
-        HeadlessGame game2 = new HeadlessGame(player2, player1, 7, 3/*s timeout*/, 5/*games*/);
+        HeadlessGame game2 = new HeadlessGame(player2, player1, 7, 3/*s timeout*/, 5/*games*/, concurrency);
         GameResult gr2 = game2.start();       
         System.out.println(gr2);
 
@@ -53,100 +89,408 @@ public class HeadlessGame {
         this.timeout = timeout;
     }
 
+    /**
+     * Parallel match: up to <code>concurrency</code> games at the same time,
+     * each one with new players from the factories (players keep state
+     * between moves and games, so they can't be shared). The names of the
+     * result are the ones of the players of the first game. The output of
+     * each game is buffered and printed in one block when it ends.
+     *
+     * @param p1 factory of the PLAYER1 players
+     * @param p2 factory of the PLAYER2 players
+     * @param size board size
+     * @param timeout seconds per move
+     * @param gameCount games to play
+     * @param concurrency games played at the same time (see {@link #defaultConcurrency()})
+     */
+    public HeadlessGame(Supplier<IPlayer> p1, Supplier<IPlayer> p2, int size, int timeout, int gameCount, int concurrency) {
+        this(size, timeout, gameCount, concurrency);
+        this.factory1 = p1;
+        this.factory2 = p2;
+    }
+
+    /**
+     * Game runner without players of its own, for {@link League}: it only
+     * plays the games it is given with {@link #playBuffered}.
+     *
+     * @param size board size
+     * @param timeout seconds per move
+     * @param gameCount games that will be played (to size the pool)
+     * @param concurrency games played at the same time
+     */
+    HeadlessGame(int size, int timeout, int gameCount, int concurrency) {
+        this.size = size;
+        this.timeout = timeout;
+        this.gameCount = gameCount;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Full garbage collection after every move, so that the garbage of one
+     * player is not collected during the time of the other. Off by default:
+     * it stops everything for tens of milliseconds per move, and all the
+     * games at once in a parallel match.
+     *
+     * @param gcBetweenMoves true to collect after every move
+     */
+    public void setGcBetweenMoves(boolean gcBetweenMoves) {
+        this.gcBetweenMoves = gcBetweenMoves;
+    }
+
+    /**
+     * Records every game, with the nodes, depth and thinking time of every
+     * move, in a game-record file. The writer is shared by the parallel
+     * games and is not closed here.
+     *
+     * @param recorder writer of the records, or null not to record
+     */
+    public void setRecorder(GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Games that can run at the same time giving a core to each player:
+     * half the available processors.
+     *
+     * @return default concurrency of a parallel match
+     */
+    public static int defaultConcurrency() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
     public GameResult start() {
-        GameResult gr = new GameResult();
+        if (factory1 != null) {
+            return startParallel();
+        }
+        GameResult gr = new GameResult(players[0].getName(), players[1].getName());
         for (int i = 0; i < gameCount; i++) {
             //System.out.println(">" + i);
-            gr.update(play(players[0], players[1]));
+            gr.update(play(players[0], players[1], gr));
         }
         return gr;
     }
 
-    private class Result {
-        public boolean ok;
+    private GameResult startParallel() {
+        // The players of the first game give their names to the result
+        IPlayer first1 = factory1.get();
+        IPlayer first2 = factory2.get();
+        GameResult gr = new GameResult(first1.getName(), first2.getName());
+        ExecutorService pool = gamePool();
+        List<Future<?>> games = new ArrayList<>();
+        for (int i = 0; i < gameCount; i++) {
+            final int game = i + 1;
+            games.add(pool.submit(() -> {
+                IPlayer player1 = game == 1 ? first1 : factory1.get();
+                IPlayer player2 = game == 1 ? first2 : factory2.get();
+                gr.update(playBuffered("Game " + game + "/" + gameCount, player1, player2, gr));
+                return null;
+            }));
+        }
+        for (Future<?> f : games) {
+            try {
+                f.get();
+            } catch (Exception ex) {
+                Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, "Failed game, not counted", ex);
+            }
+        }
+        pool.shutdown();
+        return gr;
     }
 
-    private PlayerType play(IPlayer player, IPlayer player0) {
-        this.status = new GameStatus(size);
+    /**
+     * SPRT match of the first factory (the candidate) against the second
+     * (the baseline), alternating colours. Games are played as in a
+     * parallel match until the test accepts one of the hypotheses or
+     * <code>gameCount</code> games have been played; the games already
+     * running when the test decides are finished and counted.
+     *
+     * @param elo0 Elo difference of H0
+     * @param elo1 Elo difference of H1
+     * @param alpha probability of accepting H1 when H0 is true
+     * @param beta probability of accepting H0 when H1 is true
+     * @return the test, with its decision, LLR and Elo estimate
+     */
+    public Sprt startSprt(double elo0, double elo1, double alpha, double beta) {
+        if (factory1 == null) {
+            throw new IllegalStateException("SPRT needs player factories");
+        }
+        Sprt sprt = new Sprt(elo0, elo1, alpha, beta);
+        // The players of the first game give their names to the result
+        IPlayer firstCandidate = factory1.get();
+        IPlayer firstBaseline = factory2.get();
+        GameResult gr = new GameResult(firstCandidate.getName(), firstBaseline.getName());
+        ExecutorService pool = gamePool();
+        CompletionService<Double> done = new ExecutorCompletionService<>(pool);
+        int submitted = 0;
+        int running = 0;
+        while (true) {
+            while (running < concurrency && submitted < gameCount && sprt.getDecision() == Sprt.Decision.CONTINUE) {
+                final int game = ++submitted;
+                // Odd games with the candidate as PLAYER1, even games as PLAYER2
+                final boolean first = (game & 1) == 1;
+                done.submit(() -> {
+                    IPlayer candidate = game == 1 ? firstCandidate : factory1.get();
+                    IPlayer baseline = game == 1 ? firstBaseline : factory2.get();
+                    String header = "Game " + game + "/" + gameCount;
+                    PlayerType winner = first ? playBuffered(header, candidate, baseline, gr)
+                                              : playBuffered(header, baseline, candidate, gr);
+                    PlayerType mine = first ? PlayerType.PLAYER1 : PlayerType.PLAYER2;
+                    return winner == null ? 0.5 : winner == mine ? 1.0 : 0.0;
+                });
+                running++;
+            }
+            if (running == 0) {
+                break;
+            }
+            try {
+                double score = done.take().get();
+                running--;
+                sprt.update(score);
+                System.out.println(String.format(java.util.Locale.ROOT, "SPRT %d: LLR %.2f, Elo %.1f +- %.1f",
+                        sprt.getGames(), sprt.llr(), sprt.elo(), sprt.eloError()));
+            } catch (InterruptedException | ExecutionException ex) {
+                // A failed game is not a result for the test
+                Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, "Failed game, not counted", ex);
+                running--;
+            }
+        }
+        pool.shutdown();
+        System.out.println(String.format(java.util.Locale.ROOT, "Harness overhead: %.1f us/move", gr.getOverheadPerMove()));
+        return sprt;
+    }
 
-        while (!this.status.isGameOver()) {
+    /**
+     * Pool of <code>concurrency</code> threads for whole games, with the
+     * output routed per game.
+     */
+    ExecutorService gamePool() {
+        routeOutput();
+        AtomicInteger started = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.min(concurrency, gameCount), r -> {
+            Thread t = new Thread(r, "game-" + started.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
 
-            final Semaphore semaphore = new Semaphore(1);
-            semaphore.tryAcquire();
+    /**
+     * Plays a game with its output in a buffer, printed in one block at the
+     * end after <code>header</code>. The pool of {@link #gamePool()} must
+     * be running: it routes System.out to the buffer.
+     *
+     * <p>A game that fails (an exception of the harness or of a player
+     * outside its move) has no result: the exception is thrown after the
+     * output is printed, so that the caller leaves the game out of the
+     * results instead of counting it as a tie.</p>
+     *
+     * @return the winner, or null for a tie
+     */
+    PlayerType playBuffered(String header, IPlayer player1, IPlayer player2, GameResult gr) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GAME_OUTPUT.set(out);
+        try {
+            return play(player1, player2, gr);
+        } catch (RuntimeException ex) {
+            ex.printStackTrace(new PrintStream(out, true));
+            throw ex;
+        } finally {
+            GAME_OUTPUT.remove();
+            synchronized (console) {
+                console.println("==== " + header + ": " + player1.getName() + " - " + player2.getName());
+                console.print(out.toString());
+                console.println();
+                console.flush();
+            }
+        }
+    }
 
-            final Result r = new Result();
-            final PlayerType cp = status.getCurrentPlayer();
-            Thread t1 = new Thread(() -> {
-                PlayerMove m = null;
-                try {
-                    m = players[cp == PlayerType.PLAYER1 ? 0 : 1].move(new GameStatus(status));
-                } catch(Exception ex) {
-                    System.out.println("Excepció descontrolada al player:"+cp.name());
-                    ex.printStackTrace();
+    /**
+     * Replaces System.out, once, by a stream that writes to the buffer of
+     * the game of the current thread, or to the console outside games.
+     */
+    private static synchronized void routeOutput() {
+        if (console != null) {
+            return;
+        }
+        console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                ByteArrayOutputStream out = GAME_OUTPUT.get();
+                if (out != null) {
+                    out.write(b);
+                } else {
+                    console.write(b);
                 }
-                if (m != null) {
-                    
-                    try {
-                    
-                        for(Point p:m.getPoints()){
-                            if(cp != status.getCurrentPlayer()) throw new Exception("Invalid move sequence, non-capturing move should be the last.");
-                            status.placeStone(p);
-                        }
-                        if( !status.isGameOver() && cp == status.getCurrentPlayer()) throw new Exception("Invalid move sequence, it must end in non-capturing move.");
-                    }catch(Exception ex){
-                        System.out.println("Excepció descontrolada al player:"+cp.name());
-                        ex.printStackTrace();
-                        status.forceLoser(cp);    
-                    }                    
-                    
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteArrayOutputStream out = GAME_OUTPUT.get();
+                if (out != null) {
+                    out.write(b, off, len);
                 } else {
-                    status.forceLoser(cp);
+                    console.write(b, off, len);
                 }
-                System.out.print(cp==PlayerType.PLAYER1?"1":"2");
-                System.out.print( "["+status.diff()+"] " );
-                r.ok = true;
-                semaphore.release();
-            });
+            }
 
-            Thread t2 = new Thread(() -> {
+            @Override
+            public void flush() {
+                console.flush();
+            }
+        }, true));
+    }
+
+    private PlayerType play(IPlayer player1, IPlayer player2, GameResult gr) {
+        try {
+            return playGame(player1, player2, gr);
+        } finally {
+            release(player1);
+            release(player2);
+        }
+    }
+
+    private PlayerType playGame(IPlayer player1, IPlayer player2, GameResult gr) {
+        final IPlayer[] players = {player1, player2};
+        final GameStatus status = new GameStatus(size);
+        final ByteArrayOutputStream output = GAME_OUTPUT.get();
+        long moves = 0;
+        long overhead = 0;
+        final GameRecordWriter.Game record = recorder == null ? null
+                : recorder.begin(size, player1.getName(), player2.getName(), true);
+
+        while (!status.isGameOver()) {
+
+            final PlayerType cp = status.getCurrentPlayer();
+            final IPlayer player = players[cp == PlayerType.PLAYER1 ? 0 : 1];
+            final GameStatus copy = new GameStatus(status);
+            final long[] thinking = new long[1];
+            long start = System.nanoTime();
+            // The pool threads are shared: the output of the move goes to this game
+            Future<PlayerMove> move = MOVES.submit(() -> {
+                GAME_OUTPUT.set(output);
+                long t0 = System.nanoTime();
                 try {
-                    Thread.sleep(HeadlessGame.this.timeout * 1000);
-                } catch (InterruptedException ex) {
-                }
-                if (!r.ok) {
-                    players[cp == PlayerType.PLAYER1 ? 0 : 1].timeout();
+                    return player.move(copy);
+                } finally {
+                    thinking[0] = System.nanoTime() - t0;
+                    GAME_OUTPUT.remove();
                 }
             });
-
-            t1.start();
-            t2.start();
-            long WAIT_EXTRA_TIME = 2000;
+            PlayerMove m = null;
             try {
-                if (!semaphore.tryAcquire(1, timeout * 1000 + WAIT_EXTRA_TIME, TimeUnit.MILLISECONDS)) {
-
-                    System.out.println("Espera il·legal ! Player trampós:"+cp.name());
-                    //throw new RuntimeException("Jugador trampós ! Espera il·legal !");
-                    // Som millors persones deixant que el jugador il·legal continui jugant...
-                    semaphore.acquire();
-                }
+                m = waitMove(move, player, cp);
+            } catch (ExecutionException ex) {
+                System.out.println("Excepció descontrolada al player:"+cp.name());
+                ex.getCause().printStackTrace();
+            }
+            int placed = 0;
+            if (m != null) {
+                
+                try {
+                
+                    for(Point p:m.getPoints()){
+                        if(cp != status.getCurrentPlayer()) throw new Exception("Invalid move sequence, non-capturing move should be the last.");
+                        status.placeStone(p);
+                        placed++;
+                    }
+                    if( !status.isGameOver() && cp == status.getCurrentPlayer()) throw new Exception("Invalid move sequence, it must end in non-capturing move.");
+                }catch(Exception ex){
+                    System.out.println("Excepció descontrolada al player:"+cp.name());
+                    ex.printStackTrace();
+                    status.forceLoser(cp);    
+                }                    
+                
+            } else {
+                status.forceLoser(cp);
+            }
+            if (record != null) {
+                // Només les pedres posades: una jugada il·legal s'atura on falla
+                List<Point> stones = m == null ? Collections.<Point>emptyList() : m.getPoints().subList(0, placed);
+                record.turn(stones, m == null ? 0 : m.getNumerOfNodesExplored(),
+                        m == null ? 0 : m.getMaxDepthReached(), thinking[0] / 1000);
+            }
+            System.out.print(cp==PlayerType.PLAYER1?"1":"2");
+            System.out.print( "["+status.diff()+"] " );
+            // El que no és pensar el jugador és cost de l'arnès (el get() del
+            // Future fa visible thinking)
+            moves++;
+            overhead += System.nanoTime() - start - thinking[0];
 
-            } catch (InterruptedException ex) {
-                Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, null, ex);
+            // Netegem la memòria només si es demana: és una aturada de
+            // desenes de ms per tirada, i en paral·lel aturaria totes les partides
+            if (gcBetweenMoves) {
+                gc();
             }
-            // Netegem la memòria (for free!)
-            gc();
             
         }
         System.out.println("|||| WINNER:"+ (status.GetWinner()==PlayerType.PLAYER1?"1":"2"));
+        gr.addMoves(moves, overhead);
+        if (record != null) {
+            try {
+                record.end(status.GetWinner());
+            } catch (IOException ex) {
+                Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
         return status.GetWinner();
     }
 
-    private class GameResult {
+    /**
+     * Tells a player that the game is over, if it holds threads or other
+     * resources between moves ({@link AutoCloseable}).
+     */
+    private static void release(IPlayer player) {
+        if (player instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) player).close();
+            } catch (Exception ex) {
+                Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
 
-        java.util.List<PlayerType> results;
+    /**
+     * Waits for a move: at <code>timeout</code> seconds the player is told
+     * to stop and it has WAIT_EXTRA_TIME more to answer. After that it is
+     * a cheater, but the game waits for it anyway.
+     */
+    private PlayerMove waitMove(Future<PlayerMove> move, IPlayer player, PlayerType cp) throws ExecutionException {
+        try {
+            try {
+                return move.get(timeout, TimeUnit.SECONDS);
+            } catch (TimeoutException ex) {
+                player.timeout();
+            }
+            try {
+                return move.get(WAIT_EXTRA_TIME, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                System.out.println("Espera il·legal ! Player trampós:"+cp.name());
+                //throw new RuntimeException("Jugador trampós ! Espera il·legal !");
+                // Som millors persones deixant que el jugador il·legal continui jugant...
+                return move.get();
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Results of a match, seen from PLAYER1. Games can be added from
+     * several threads.
+     */
+    public static class GameResult {
 
-        public GameResult() {
-            results = new ArrayList<PlayerType>();
+        private final String names[];
+        private final java.util.List<PlayerType> results;
+        private long moves;
+        private long overhead;
+
+        public GameResult(String name1, String name2) {
+            names = new String[]{name1, name2};
+            results = Collections.synchronizedList(new ArrayList<PlayerType>());
 
         }
 
@@ -154,13 +498,42 @@ public class HeadlessGame {
             results.add(res);
         }
 
+        /**
+         * Adds the moves of a game and the time spent on them outside the
+         * players (threads, copies, applying the move...).
+         */
+        public synchronized void addMoves(long moves, long overheadNanos) {
+            this.moves += moves;
+            this.overhead += overheadNanos;
+        }
+
+        public synchronized long getMoves() {
+            return moves;
+        }
+
+        /**
+         * @return mean harness time per move, in microseconds
+         */
+        public synchronized double getOverheadPerMove() {
+            return moves > 0 ? overhead / 1000.0 / moves : 0;
+        }
+
+        /**
+         * @return winners of the games played so far (null for a tie), in the order they ended
+         */
+        public List<PlayerType> getResults() {
+            synchronized (results) {
+                return new ArrayList<>(results);
+            }
+        }
+
         @Override
         public String toString() {
             String res = "\n ================================================================="+
                          "\n ================       RESULTS       ============================"+
                          "\n =================================================================\n";
             int wins1 = 0, ties1 = 0, loose1 = 0;
-            for (PlayerType c : results) {
+            for (PlayerType c : getResults()) {
                 if (null == c) {
                     ties1++;
                 } else {
@@ -175,8 +548,9 @@ public class HeadlessGame {
                 }
             }
 
-            res += "PLAYER 1 (" + pad(players[0].getName(), 40) + "):\t wins " + wins1 + "\t ties:" + ties1 + "\t looses:" + loose1 + "\n";
-            res += "PLAYER 2 (" + pad(players[1].getName(), 40) + "):\t wins " + loose1 + "\t ties:" + ties1 + "\t looses:" + wins1 + "\n";
+            res += "PLAYER 1 (" + pad(names[0], 40) + "):\t wins " + wins1 + "\t ties:" + ties1 + "\t looses:" + loose1 + "\n";
+            res += "PLAYER 2 (" + pad(names[1], 40) + "):\t wins " + loose1 + "\t ties:" + ties1 + "\t looses:" + wins1 + "\n";
+            res += String.format(java.util.Locale.ROOT, "Harness overhead: %.1f us/move (%d moves)%n", getOverheadPerMove(), getMoves());
             return res;
         }
 
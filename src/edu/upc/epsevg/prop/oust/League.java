@@ -0,0 +1,331 @@
+package edu.upc.epsevg.prop.oust;
+
+import edu.upc.epsevg.prop.oust.players.HaroLin.PlayerMiniMax;
+import edu.upc.epsevg.prop.oust.players.HaroLin.PlayerMiniMaxIDS;
+import edu.upc.epsevg.prop.oust.players.RandomPlayer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Round-robin league between player factories: every pairing is played
+ * <code>rounds</code> times with each colour, in parallel as in a
+ * {@link HeadlessGame} match, and the players are rated with a
+ * Bradley-Terry (Elo) model.
+ *
+ * <p>Every finished game is appended to the results file, one line per game
+ * (<code>white black round result</code>, tab separated, result
+ * <code>1-0</code>, <code>0-1</code> or <code>1/2-1/2</code>). When the
+ * league starts again with the same file, the games already there are
+ * not played again, so an interrupted run goes on where it stopped; the
+ * file can also be rated alone with {@link #ratings()}.</p>
+ *
+ * <p>The ratings are the maximum likelihood ones, with a tie as half a win,
+ * plus a prior as in BayesElo: every player has {@link #PRIOR_TIES} ties
+ * against a virtual player of rating 0, so that a player that wins (or
+ * loses) every game still has a finite rating. The error bar is the 95%
+ * interval from the curvature of the likelihood of each rating, taking the
+ * others as fixed. Ratings are shifted so that their mean is 0.</p>
+ *
+ * @author jieke
+ */
+public class League {
+
+    /** Virtual ties of every player against a player of rating 0. */
+    public static final double PRIOR_TIES = 2;
+
+    private static final double ELO_PER_LOG = 400 / Math.log(10);
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Supplier<IPlayer>> factories = new ArrayList<>();
+    private final int size;
+    private final int timeout;
+    private final int rounds;
+    private final int concurrency;
+    private final Path file;
+    private final Set<String> played = new HashSet<>();
+    private boolean cutLine;
+    private GameRecordWriter recorder;
+    // score[i][j]: points of i against j, games[i][j]: games between them
+    private double[][] score = new double[0][0];
+    private int[][] games = new int[0][0];
+
+    /**
+     * @param size board size
+     * @param timeout seconds per move
+     * @param rounds games of every pairing with each colour
+     * @param concurrency games played at the same time (see {@link HeadlessGame#defaultConcurrency()})
+     * @param file results file, read to resume and appended to
+     */
+    public League(int size, int timeout, int rounds, int concurrency, Path file) {
+        this.size = size;
+        this.timeout = timeout;
+        this.rounds = rounds;
+        this.concurrency = concurrency;
+        this.file = file;
+    }
+
+    /**
+     * Adds a player. Every game gets new players from the factory.
+     *
+     * @param name name of the player in the results (unique, without tabs)
+     * @param factory factory of the player
+     */
+    public synchronized void add(String name, Supplier<IPlayer> factory) {
+        if (names.contains(name) || name.indexOf('\t') >= 0) {
+            throw new IllegalArgumentException("League: repeated or invalid name " + name);
+        }
+        names.add(name);
+        factories.add(factory);
+        int n = names.size();
+        double[][] s = new double[n][n];
+        int[][] g = new int[n][n];
+        for (int i = 0; i < n - 1; i++) {
+            System.arraycopy(score[i], 0, s[i], 0, n - 1);
+            System.arraycopy(games[i], 0, g[i], 0, n - 1);
+        }
+        score = s;
+        games = g;
+    }
+
+    /**
+     * Records the games played in a game-record file (see
+     * {@link HeadlessGame#setRecorder}).
+     *
+     * @param recorder writer of the records, or null not to record
+     */
+    public void setRecorder(GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Plays the games of the league that are not yet in the results file.
+     *
+     * @return the ratings, best first
+     * @throws IOException if the results file can't be read or written
+     */
+    public List<Rating> start() throws IOException {
+        load();
+        List<int[]> pending = new ArrayList<>();
+        for (int round = 1; round <= rounds; round++) {
+            for (int white = 0; white < names.size(); white++) {
+                for (int black = 0; black < names.size(); black++) {
+                    if (white != black && !played.contains(key(names.get(white), names.get(black), round))) {
+                        pending.add(new int[]{white, black, round});
+                    }
+                }
+            }
+        }
+        int total = names.size() * (names.size() - 1) * rounds;
+        System.out.println("League: " + (total - pending.size()) + "/" + total + " games already played");
+        if (pending.isEmpty()) {
+            return ratings();
+        }
+
+        HeadlessGame runner = new HeadlessGame(size, timeout, pending.size(), concurrency);
+        runner.setRecorder(recorder);
+        HeadlessGame.GameResult gr = new HeadlessGame.GameResult("white", "black");
+        AtomicInteger done = new AtomicInteger(total - pending.size());
+        ExecutorService pool = runner.gamePool();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (cutLine) {
+                out.newLine();
+            }
+            List<Future<?>> running = new ArrayList<>();
+            for (int[] game : pending) {
+                running.add(pool.submit(() -> {
+                    String white = names.get(game[0]);
+                    String black = names.get(game[1]);
+                    PlayerType winner = runner.playBuffered("League " + white + " - " + black + " round " + game[2],
+                            factories.get(game[0]).get(), factories.get(game[1]).get(), gr);
+                    String result = winner == null ? "1/2-1/2" : winner == PlayerType.PLAYER1 ? "1-0" : "0-1";
+                    synchronized (this) {
+                        record(white, black, game[2], result);
+                        out.write(white + "\t" + black + "\t" + game[2] + "\t" + result);
+                        out.newLine();
+                        // Line by line, so that an interruption loses at most the running games
+                        out.flush();
+                    }
+                    System.out.println("League " + done.incrementAndGet() + "/" + total + ": "
+                            + white + " - " + black + " " + result);
+                    return null;
+                }));
+            }
+            for (Future<?> f : running) {
+                try {
+                    f.get();
+                } catch (Exception ex) {
+                    // Not in the results file: it is played again on resume
+                    Logger.getLogger(League.class.getName()).log(Level.SEVERE, "Failed game, not recorded", ex);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println(String.format(Locale.ROOT, "Harness overhead: %.1f us/move", gr.getOverheadPerMove()));
+        return ratings();
+    }
+
+    /**
+     * Reads the games of the results file whose players are in the league.
+     * A line cut by an interruption is ignored.
+     */
+    private synchronized void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        cutLine = !text.isEmpty() && !text.endsWith("\n");
+        for (String line : text.split("\r?\n")) {
+            String[] f = line.split("\t");
+            if (f.length != 4 || !names.contains(f[0]) || !names.contains(f[1])
+                    || !(f[3].equals("1-0") || f[3].equals("0-1") || f[3].equals("1/2-1/2"))) {
+                continue;
+            }
+            try {
+                record(f[0], f[1], Integer.parseInt(f[2]), f[3]);
+            } catch (NumberFormatException ex) {
+                // Cut line
+            }
+        }
+    }
+
+    private void record(String white, String black, int round, String result) {
+        if (!played.add(key(white, black, round))) {
+            return;
+        }
+        int w = names.indexOf(white);
+        int b = names.indexOf(black);
+        double points = result.equals("1-0") ? 1 : result.equals("0-1") ? 0 : 0.5;
+        score[w][b] += points;
+        score[b][w] += 1 - points;
+        games[w][b]++;
+        games[b][w]++;
+    }
+
+    private static String key(String white, String black, int round) {
+        return white + "\t" + black + "\t" + round;
+    }
+
+    /**
+     * Ratings of the games played so far, by minorization-maximization of
+     * the Bradley-Terry likelihood.
+     *
+     * @return the ratings, best first
+     */
+    public synchronized List<Rating> ratings() {
+        int n = names.size();
+        double[] gamma = new double[n];
+        Arrays.fill(gamma, 1);
+        for (int iter = 0; iter < 10000; iter++) {
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                double points = PRIOR_TIES / 2;
+                double sum = PRIOR_TIES / (gamma[i] + 1);
+                for (int j = 0; j < n; j++) {
+                    if (games[i][j] > 0) {
+                        points += score[i][j];
+                        sum += games[i][j] / (gamma[i] + gamma[j]);
+                    }
+                }
+                double g = points / sum;
+                change = Math.max(change, Math.abs(Math.log(g / gamma[i])));
+                gamma[i] = g;
+            }
+            if (change < 1e-10) {
+                break;
+            }
+        }
+        double mean = 0;
+        for (int i = 0; i < n; i++) {
+            mean += Math.log(gamma[i]) / n;
+        }
+        List<Rating> ratings = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            // Fisher information of log(gamma_i)
+            double p0 = gamma[i] / (gamma[i] + 1);
+            double information = PRIOR_TIES * p0 * (1 - p0);
+            int count = 0;
+            double points = 0;
+            for (int j = 0; j < n; j++) {
+                double p = gamma[i] / (gamma[i] + gamma[j]);
+                information += games[i][j] * p * (1 - p);
+                count += games[i][j];
+                points += score[i][j];
+            }
+            ratings.add(new Rating(names.get(i), (Math.log(gamma[i]) - mean) * ELO_PER_LOG,
+                    1.96 * ELO_PER_LOG / Math.sqrt(information), count, points));
+        }
+        ratings.sort(Comparator.comparingDouble((Rating r) -> r.elo).reversed());
+        return ratings;
+    }
+
+    /**
+     * Rating of a player.
+     */
+    public static class Rating {
+
+        public final String name;
+        public final double elo;
+        /** Half width of the 95% interval. */
+        public final double error;
+        public final int games;
+        public final double points;
+
+        Rating(String name, double elo, double error, int games, double points) {
+            this.name = name;
+            this.elo = elo;
+            this.error = error;
+            this.games = games;
+            this.points = points;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-24s %7.1f +- %5.1f  %5d  %5.1f%%",
+                    name, elo, error, games, games > 0 ? 100 * points / games : 0);
+        }
+    }
+
+    /**
+     * @return the ratings as a table, best first
+     */
+    public static String table(List<Rating> ratings) {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%4s %-24s %7s %9s  %5s  %6s%n",
+                "#", "Player", "Elo", "95%", "Games", "Score"));
+        for (int i = 0; i < ratings.size(); i++) {
+            sb.append(String.format(Locale.ROOT, "%4d %s%n", i + 1, ratings.get(i)));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "league.tsv");
+        League league = new League(7, 3/*s timeout*/, 2/*rounds*/, HeadlessGame.defaultConcurrency(), file);
+        league.add("Random", () -> new RandomPlayer("Random"));
+        league.add("Minimax2", () -> new PlayerMiniMax(2));
+        league.add("Minimax4", () -> new PlayerMiniMax(4));
+        league.add("MiniMaxIDS", PlayerMiniMaxIDS::new);
+        league.add("MalaOustia", MalaOustiaPlayer::new);
+        league.add("MOustValuable", MOustValuablePlayer::new);
+        System.out.println(table(league.start()));
+    }
+}
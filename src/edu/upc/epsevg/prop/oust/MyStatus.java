@@ -1,13 +1,791 @@
-/*
- * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
- * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
- */
 package edu.upc.epsevg.prop.oust;
 
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
+ * Motor de reglas de Oust basado en bitboards.
+ *
+ * <p>Reproduce el comportamiento de {@link GameStatus} (colocación, capturas,
+ * cambio de turno y final de partida) pero sin crear objetos durante la
+ * búsqueda: las casillas válidas del hexágono se numeran en orden de filas
+ * ({@code 0..getCellCount()-1}) y las piedras de cada jugador se guardan en
+ * un {@code long[]} donde el bit {@code i} representa la casilla {@code i}.</p>
+ *
+ * <p>Los grupos se calculan por expansión de máscaras de vecinos
+ * precalculadas, que se comparten entre todos los estados del mismo tamaño.</p>
  *
  * @author Usuari
  */
 public class MyStatus {
-    
+
+    /** Jugadores indexados por {@link PlayerType#to_01()}. */
+    protected static final PlayerType[] JUGADORS = {PlayerType.PLAYER1, PlayerType.PLAYER2};
+
+    /** Desplazamientos (fila, columna) de las seis direcciones de {@link Dir}. */
+    private static final int[][] DIRS = {{1, 0}, {1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {0, 1}};
+
+    private static final Geometria[] GEOMETRIES = new Geometria[32];
+
+    protected final Geometria geo;
+    protected final int words;
+
+    /** Piedras de cada jugador: {@code stones[0]} PLAYER1, {@code stones[1]} PLAYER2. */
+    protected final long[][] stones;
+    protected final int[] count;
+    protected int turn;
+    protected int winner;
+    protected boolean forced;
+
+    /** Piedras capturadas por la última llamada a {@link #placeStone(int)}. */
+    protected final long[] captured;
+
+    // Buffers de trabajo (evitan crear objetos en las comprobaciones de legalidad)
+    private final long[] grp;
+    private final long[] reach;
+    private final long[] frontier;
+    private final long[] next;
+    private final long[] enemic;
+    private final long[] ring;
+    private final long[] zonaPropia;
+    private final int[] grup;
+    private final int[] midaGrup;
+    private final int[] maxEnemicGrup;
+    private final int[] grupsVistos = new int[6];
+
+    /**
+     * Crea un estado de juego vacío de mida n.
+     *
+     * @param n mida del costat de l'hexàgon
+     */
+    public MyStatus(int n) {
+        this.geo = geometria(n);
+        this.words = geo.words;
+        this.stones = new long[2][words];
+        this.count = new int[2];
+        this.turn = 0;
+        this.winner = -1;
+        this.captured = new long[words];
+        this.grp = new long[words];
+        this.reach = new long[words];
+        this.frontier = new long[words];
+        this.next = new long[words];
+        this.enemic = new long[words];
+        this.ring = new long[words];
+        this.zonaPropia = new long[words];
+        this.grup = new int[geo.cells];
+        this.midaGrup = new int[geo.cells];
+        this.maxEnemicGrup = new int[geo.cells];
+    }
+
+    /**
+     * Crea un estado equivalente a un {@link GameStatus} de la librería.
+     *
+     * @param gs estado a convertir
+     */
+    public MyStatus(GameStatus gs) {
+        this(gs.getSize());
+        for (int cell = 0; cell < geo.cells; cell++) {
+            PlayerType color = gs.getColor(geo.row[cell], geo.col[cell]);
+            if (color != null) {
+                int p = color.to_01();
+                stones[p][cell >>> 6] |= 1L << cell;
+                count[p]++;
+            }
+        }
+        turn = gs.getCurrentPlayer().to_01();
+        if (gs.isGameOver()) {
+            winner = gs.GetWinner() == null ? -1 : gs.GetWinner().to_01();
+            forced = !finalNatural();
+        }
+    }
+
+    /**
+     * Copia completa de un estado.
+     *
+     * @param other estado a copiar
+     */
+    public MyStatus(MyStatus other) {
+        this(other.geo.n);
+        copyFrom(other);
+    }
+
+    /**
+     * Sobrescribe este estado con el contenido de otro de la misma mida.
+     *
+     * @param other estado a copiar
+     */
+    public void copyFrom(MyStatus other) {
+        System.arraycopy(other.stones[0], 0, stones[0], 0, words);
+        System.arraycopy(other.stones[1], 0, stones[1], 0, words);
+        count[0] = other.count[0];
+        count[1] = other.count[1];
+        turn = other.turn;
+        winner = other.winner;
+        forced = other.forced;
+    }
+
+    //=====================================================================================
+    // Geometria
+    //=====================================================================================
+
+    /**
+     * Retorna la mida del costat del tauler (costat de l'hexàgon).
+     *
+     * @return mida del costat
+     */
+    public int getSize() {
+        return geo.n;
+    }
+
+    /**
+     * Retorna la mida de la taula contenidora.
+     *
+     * @return {@code 2n-1}
+     */
+    public int getSquareSize() {
+        return geo.square;
+    }
+
+    /**
+     * Número de casillas válidas del hexágono.
+     *
+     * @return número de casillas
+     */
+    public int getCellCount() {
+        return geo.cells;
+    }
+
+    /**
+     * Índice de casilla de unas coordenadas (fila, columna).
+     *
+     * @param row fila
+     * @param col columna
+     * @return índice de la casilla o -1 si está fuera del tablero
+     */
+    public int toCell(int row, int col) {
+        if (row < 0 || col < 0 || row >= geo.square || col >= geo.square) {
+            return -1;
+        }
+        return geo.index[row * geo.square + col];
+    }
+
+    /**
+     * Índice de casilla de un punto (fila, columna).
+     *
+     * @param p punto en formato (fila, columna)
+     * @return índice de la casilla o -1 si está fuera del tablero
+     */
+    public int toCell(Point p) {
+        return toCell(p.x, p.y);
+    }
+
+    /**
+     * Punto (fila, columna) de una casilla.
+     *
+     * @param cell índice de la casilla
+     * @return nuevo punto con las coordenadas de la casilla
+     */
+    public Point toPoint(int cell) {
+        return new Point(geo.row[cell], geo.col[cell]);
+    }
+
+    public int getRow(int cell) {
+        return geo.row[cell];
+    }
+
+    public int getCol(int cell) {
+        return geo.col[cell];
+    }
+
+    /**
+     * Casillas vecinas de una casilla (compartido, no modificar).
+     *
+     * @param cell índice de la casilla
+     * @return vecinos dentro del tablero
+     */
+    public int[] getNeighbours(int cell) {
+        return geo.neigh[cell];
+    }
+
+    //=====================================================================================
+    // Consultes d'estat
+    //=====================================================================================
+
+    /**
+     * Retorna el color de la casilla seleccionada.
+     *
+     * @param row fila
+     * @param col columna
+     * @return el color de la casilla o null si está vacía o fuera del tablero
+     */
+    public PlayerType getColor(int row, int col) {
+        int cell = toCell(row, col);
+        return cell < 0 ? null : getColor(cell);
+    }
+
+    /**
+     * Retorna el color de la casilla seleccionada.
+     *
+     * @param cell índice de la casilla
+     * @return el color de la casilla o null si está vacía
+     */
+    public PlayerType getColor(int cell) {
+        int p = owner(cell);
+        return p < 0 ? null : JUGADORS[p];
+    }
+
+    /**
+     * Propietario de una casilla.
+     *
+     * @param cell índice de la casilla
+     * @return 0 (PLAYER1), 1 (PLAYER2) o -1 si está vacía
+     */
+    public int owner(int cell) {
+        long bit = 1L << cell;
+        int w = cell >>> 6;
+        if ((stones[0][w] & bit) != 0) return 0;
+        if ((stones[1][w] & bit) != 0) return 1;
+        return -1;
+    }
+
+    public PlayerType getCurrentPlayer() {
+        return JUGADORS[turn];
+    }
+
+    /**
+     * Jugador actual como índice.
+     *
+     * @return 0 (PLAYER1) o 1 (PLAYER2)
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    public boolean isGameOver() {
+        return forced || finalNatural();
+    }
+
+    /**
+     * Retorna el guanyador (només té sentit si isGameOver()==true).
+     *
+     * @return el guanyador o null
+     */
+    public PlayerType GetWinner() {
+        return winner < 0 ? null : JUGADORS[winner];
+    }
+
+    public int getStoneCount(PlayerType player) {
+        return count[player.to_01()];
+    }
+
+    /**
+     * Diferència de peces entre els dos jugadors (PLAYER1-PLAYER2).
+     *
+     * @return diferència de peces
+     */
+    public int diff() {
+        return count[0] - count[1];
+    }
+
+    /**
+     * Força el final de la partida, indicant el jugador que perd.
+     *
+     * @param looser jugador que pierde
+     */
+    public void forceLoser(PlayerType looser) {
+        forced = true;
+        winner = 1 - looser.to_01();
+    }
+
+    private boolean finalNatural() {
+        return ((count[0] == 0) ^ (count[1] == 0)) && count[0] + count[1] > 1;
+    }
+
+    //=====================================================================================
+    // Moviments
+    //=====================================================================================
+
+    /**
+     * Llista de tirades vàlides des de l'estat actual, en el mateix ordre que
+     * {@link GameStatus#getMoves()}.
+     *
+     * @return casillas donde se puede colocar
+     */
+    public List<Point> getMoves() {
+        int[] buffer = new int[geo.cells];
+        int n = getMoves(buffer);
+        List<Point> moves = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            moves.add(toPoint(buffer[i]));
+        }
+        return moves;
+    }
+
+    /**
+     * Escribe en {@code moves} los índices de las casillas donde el jugador
+     * actual puede colocar, en orden creciente. No crea objetos.
+     *
+     * @param moves buffer de al menos {@link #getCellCount()} posiciones
+     * @return número de movimientos escritos
+     */
+    public int getMoves(int[] moves) {
+        int n = 0;
+        boolean etiquetat = false;
+        long[] own = stones[turn];
+        long[] opp = stones[1 - turn];
+        dilata(own, zonaPropia);
+        for (int w = 0; w < words; w++) {
+            long empty = ~(own[w] | opp[w]) & geo.valid[w];
+            while (empty != 0) {
+                long bit = empty & -empty;
+                empty ^= bit;
+                int cell = (w << 6) | Long.numberOfTrailingZeros(bit);
+                if ((zonaPropia[w] & bit) == 0) {
+                    moves[n++] = cell;
+                } else {
+                    if (!etiquetat) {
+                        etiquetaGrups();
+                        etiquetat = true;
+                    }
+                    if (capturaEtiquetada(cell)) {
+                        moves[n++] = cell;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Como {@link #getMoves(int[])} pero solo con las tiradas que capturan
+     * (las que tocan alguna piedra propia). No crea objetos.
+     *
+     * @param moves buffer de al menos {@link #getCellCount()} posiciones
+     * @return número de capturas escritas
+     */
+    public int getCaptureMoves(int[] moves) {
+        int n = 0;
+        boolean etiquetat = false;
+        long[] own = stones[turn];
+        long[] opp = stones[1 - turn];
+        dilata(own, zonaPropia);
+        for (int w = 0; w < words; w++) {
+            long candidates = zonaPropia[w] & ~(own[w] | opp[w]) & geo.valid[w];
+            while (candidates != 0) {
+                long bit = candidates & -candidates;
+                candidates ^= bit;
+                int cell = (w << 6) | Long.numberOfTrailingZeros(bit);
+                if (!etiquetat) {
+                    etiquetaGrups();
+                    etiquetat = true;
+                }
+                if (capturaEtiquetada(cell)) {
+                    moves[n++] = cell;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Indica si el jugador actual puede colocar en la casilla.
+     *
+     * @param cell índice de la casilla
+     * @return cierto si la tirada es válida
+     */
+    public boolean isLegal(int cell) {
+        if (cell < 0 || cell >= geo.cells || owner(cell) >= 0) {
+            return false;
+        }
+        long[] own = stones[turn];
+        if (!tocaPropia(cell, own)) {
+            return true;
+        }
+        return capturaLegal(cell, own, stones[1 - turn], false);
+    }
+
+    /**
+     * Indica si colocar en la casilla (que ha de ser legal) es una captura,
+     * es decir, si el jugador actual volverá a tirar.
+     *
+     * @param cell índice de la casilla
+     * @return cierto si la tirada captura
+     */
+    public boolean isCapture(int cell) {
+        return tocaPropia(cell, stones[turn]);
+    }
+
+    /**
+     * El jugador actual col·loca una pedra a la casella indicada.
+     *
+     * @param p coordenades (fila, columna) de la casella
+     */
+    public void placeStone(Point p) {
+        int cell = toCell(p);
+        if (cell < 0) {
+            throw new RuntimeException("Moviment fora del tauler: " + p);
+        }
+        placeStone(cell);
+    }
+
+    /**
+     * El jugador actual coloca una piedra en la casilla indicada. Si la tirada
+     * captura, se eliminan los grupos enemigos y el jugador vuelve a tirar; si
+     * no, pasa el turno (y vuelve si el rival no tiene movimientos).
+     *
+     * <p>Las piedras capturadas quedan en {@link #captured}.</p>
+     *
+     * @param cell índice de la casilla
+     * @throws RuntimeException si la tirada no es válida
+     */
+    public void placeStone(int cell) {
+        if (cell < 0 || cell >= geo.cells || owner(cell) >= 0) {
+            throw new RuntimeException("Moviment il·legal: " + cell);
+        }
+        int me = turn;
+        long[] own = stones[me];
+        long[] opp = stones[1 - me];
+        boolean captura = tocaPropia(cell, own);
+        if (captura) {
+            if (!capturaLegal(cell, own, opp, true)) {
+                throw new RuntimeException("Moviment il·legal: " + toPoint(cell));
+            }
+            int capturades = 0;
+            for (int w = 0; w < words; w++) {
+                opp[w] &= ~captured[w];
+                capturades += Long.bitCount(captured[w]);
+            }
+            count[1 - me] -= capturades;
+        } else {
+            for (int w = 0; w < words; w++) {
+                captured[w] = 0;
+            }
+        }
+        own[cell >>> 6] |= 1L << cell;
+        count[me]++;
+
+        if (isGameOver()) {
+            winner = me;
+        }
+        if (!captura) {
+            turn = 1 - me;
+            if (!teMoviments()) {
+                turn = me;
+            }
+        }
+    }
+
+    /**
+     * Indica si el jugador actual tiene alguna tirada válida.
+     *
+     * @return cierto si hay al menos un movimiento
+     */
+    public boolean teMoviments() {
+        long[] own = stones[turn];
+        long[] opp = stones[1 - turn];
+        dilata(own, zonaPropia);
+        for (int w = 0; w < words; w++) {
+            if ((~(own[w] | opp[w] | zonaPropia[w]) & geo.valid[w]) != 0) {
+                return true;
+            }
+        }
+        etiquetaGrups();
+        for (int w = 0; w < words; w++) {
+            long empty = ~(own[w] | opp[w]) & geo.valid[w];
+            while (empty != 0) {
+                long bit = empty & -empty;
+                empty ^= bit;
+                if (capturaEtiquetada((w << 6) | Long.numberOfTrailingZeros(bit))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Etiqueta todos los grupos del tablero: tamaño de cada grupo y, para los
+     * grupos del jugador actual, el mayor grupo enemigo que tocan. Así cada
+     * casilla candidata se resuelve mirando solo sus seis vecinos.
+     */
+    private void etiquetaGrups() {
+        int g = 0;
+        for (int k = 0; k < 2; k++) {
+            // Primero el rival, para conocer sus tamaños al etiquetar los propios
+            int p = k == 0 ? 1 - turn : turn;
+            long[] propies = stones[p];
+            long[] rivals = stones[1 - p];
+            System.arraycopy(propies, 0, ring, 0, words);
+            for (int w = 0; w < words; w++) {
+                while (ring[w] != 0) {
+                    long bit = ring[w] & -ring[w];
+                    for (int i = 0; i < words; i++) {
+                        grp[i] = 0;
+                        reach[i] = 0;
+                    }
+                    grp[w] = bit;
+                    midaGrup[g] = expandeix(grp, propies, p == turn ? reach : null);
+                    int maxEnemic = 0;
+                    for (int i = 0; i < words; i++) {
+                        ring[i] &= ~grp[i];
+                        long s = grp[i];
+                        while (s != 0) {
+                            grup[(i << 6) | Long.numberOfTrailingZeros(s)] = g;
+                            s &= s - 1;
+                        }
+                        if (p == turn) {
+                            long e = reach[i] & rivals[i];
+                            while (e != 0) {
+                                maxEnemic = Math.max(maxEnemic, midaGrup[grup[(i << 6) | Long.numberOfTrailingZeros(e)]]);
+                                e &= e - 1;
+                            }
+                        }
+                    }
+                    maxEnemicGrup[g] = maxEnemic;
+                    g++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Versión de {@link #capturaLegal} que usa las etiquetas de
+     * {@link #etiquetaGrups()}.
+     */
+    private boolean capturaEtiquetada(int cell) {
+        int mida = 1;
+        int maxEnemic = 0;
+        int[] veins = geo.neigh[cell];
+        int vistos = 0;
+        for (int v : veins) {
+            int o = owner(v);
+            if (o < 0) {
+                continue;
+            }
+            int g = grup[v];
+            if (o == turn) {
+                boolean repetit = false;
+                for (int i = 0; i < vistos; i++) {
+                    repetit |= grupsVistos[i] == g;
+                }
+                if (!repetit) {
+                    grupsVistos[vistos++] = g;
+                    mida += midaGrup[g];
+                    maxEnemic = Math.max(maxEnemic, maxEnemicGrup[g]);
+                }
+            } else {
+                maxEnemic = Math.max(maxEnemic, midaGrup[g]);
+            }
+        }
+        return maxEnemic > 0 && maxEnemic < mida;
+    }
+
+    private boolean tocaPropia(int cell, long[] own) {
+        long[] mask = geo.neighMask[cell];
+        for (int w = 0; w < words; w++) {
+            if ((mask[w] & own[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Comprueba si colocar en {@code cell} (que toca piedras propias) captura:
+     * el grupo resultante ha de tocar algún grupo enemigo y ser estrictamente
+     * mayor que todos ellos.
+     *
+     * @param guardar si es cierto, deja en {@link #captured} los grupos capturados
+     */
+    private boolean capturaLegal(int cell, long[] own, long[] opp, boolean guardar) {
+        for (int w = 0; w < words; w++) {
+            grp[w] = 0;
+            reach[w] = 0;
+        }
+        grp[cell >>> 6] |= 1L << cell;
+        int mida = expandeix(grp, own, reach);
+
+        boolean toca = false;
+        for (int w = 0; w < words; w++) {
+            ring[w] = reach[w] & opp[w];
+            toca |= ring[w] != 0;
+            if (guardar) {
+                captured[w] = ring[w];
+            }
+        }
+        if (!toca) {
+            return false;
+        }
+        // Cada grupo enemigo adyacente ha de ser más pequeño
+        for (int w = 0; w < words; w++) {
+            while (ring[w] != 0) {
+                long bit = ring[w] & -ring[w];
+                for (int k = 0; k < words; k++) {
+                    enemic[k] = 0;
+                }
+                enemic[w] = bit;
+                int midaEnemic = expandeix(enemic, opp, null);
+                if (midaEnemic >= mida) {
+                    return false;
+                }
+                for (int k = 0; k < words; k++) {
+                    ring[k] &= ~enemic[k];
+                    if (guardar) {
+                        captured[k] |= enemic[k];
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expande {@code g} por las casillas de {@code allowed} conectadas.
+     *
+     * @param g grupo inicial (se modifica)
+     * @param allowed casillas por las que puede crecer
+     * @param veins si no es null, acumula la unión de vecinos del grupo
+     * @return número de piedras del grupo final
+     */
+    private int expandeix(long[] g, long[] allowed, long[] veins) {
+        System.arraycopy(g, 0, frontier, 0, words);
+        boolean canvis = true;
+        while (canvis) {
+            for (int w = 0; w < words; w++) {
+                next[w] = 0;
+            }
+            for (int w = 0; w < words; w++) {
+                long f = frontier[w];
+                while (f != 0) {
+                    int c = (w << 6) | Long.numberOfTrailingZeros(f);
+                    f &= f - 1;
+                    long[] mask = geo.neighMask[c];
+                    for (int k = 0; k < words; k++) {
+                        next[k] |= mask[k];
+                    }
+                }
+            }
+            canvis = false;
+            for (int w = 0; w < words; w++) {
+                if (veins != null) {
+                    veins[w] |= next[w];
+                }
+                long nou = next[w] & allowed[w] & ~g[w];
+                frontier[w] = nou;
+                g[w] |= nou;
+                canvis |= nou != 0;
+            }
+        }
+        int mida = 0;
+        for (int w = 0; w < words; w++) {
+            mida += Long.bitCount(g[w]);
+        }
+        return mida;
+    }
+
+    private void dilata(long[] set, long[] out) {
+        for (int w = 0; w < words; w++) {
+            out[w] = 0;
+        }
+        for (int w = 0; w < words; w++) {
+            long s = set[w];
+            while (s != 0) {
+                long[] mask = geo.neighMask[(w << 6) | Long.numberOfTrailingZeros(s)];
+                s &= s - 1;
+                for (int k = 0; k < words; k++) {
+                    out[k] |= mask[k];
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < geo.square; row++) {
+            for (int i = 0; i < row; i++) {
+                sb.append(' ');
+            }
+            for (int col = 0; col < geo.square; col++) {
+                int cell = toCell(row, col);
+                sb.append(cell < 0 ? ' ' : owner(cell) == 0 ? 'O' : owner(cell) == 1 ? 'X' : '-').append(' ');
+            }
+            sb.append('\n');
+        }
+        sb.append("Torn:").append(getCurrentPlayer());
+        return sb.toString();
+    }
+
+    //=====================================================================================
+    // Taules precalculades per mida
+    //=====================================================================================
+
+    protected static synchronized Geometria geometria(int n) {
+        if (GEOMETRIES[n] == null) {
+            GEOMETRIES[n] = new Geometria(n);
+        }
+        return GEOMETRIES[n];
+    }
+
+    /**
+     * Numeración de casillas y máscaras de vecinos de un tablero de mida n.
+     * Inmutable y compartida entre estados.
+     */
+    protected static final class Geometria {
+        final int n;
+        final int square;
+        final int cells;
+        final int words;
+        final int[] index;
+        final int[] row;
+        final int[] col;
+        final int[][] neigh;
+        final long[][] neighMask;
+        final long[] valid;
+
+        Geometria(int n) {
+            this.n = n;
+            this.square = 2 * n - 1;
+            this.index = new int[square * square];
+            int c = 0;
+            for (int r = 0; r < square; r++) {
+                for (int k = 0; k < square; k++) {
+                    index[r * square + k] = Math.abs(k - r) <= n - 1 ? c++ : -1;
+                }
+            }
+            this.cells = c;
+            this.words = (cells + 63) >>> 6;
+            this.row = new int[cells];
+            this.col = new int[cells];
+            for (int r = 0; r < square; r++) {
+                for (int k = 0; k < square; k++) {
+                    int i = index[r * square + k];
+                    if (i >= 0) {
+                        row[i] = r;
+                        col[i] = k;
+                    }
+                }
+            }
+            this.neigh = new int[cells][];
+            this.neighMask = new long[cells][words];
+            this.valid = new long[words];
+            for (int i = 0; i < cells; i++) {
+                valid[i >>> 6] |= 1L << i;
+                int[] tmp = new int[6];
+                int m = 0;
+                for (int[] d : DIRS) {
+                    int r = row[i] + d[0];
+                    int k = col[i] + d[1];
+                    if (r >= 0 && k >= 0 && r < square && k < square && index[r * square + k] >= 0) {
+                        int v = index[r * square + k];
+                        tmp[m++] = v;
+                        neighMask[i][v >>> 6] |= 1L << v;
+                    }
+                }
+                neigh[i] = java.util.Arrays.copyOf(tmp, m);
+            }
+        }
+    }
 }
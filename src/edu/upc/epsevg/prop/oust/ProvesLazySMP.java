@@ -0,0 +1,75 @@
+package edu.upc.epsevg.prop.oust;
+
+import edu.upc.epsevg.prop.oust.players.HaroLin.PlayerMiniMaxIDS;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mesura el temps fins a arribar a una profunditat fixa del PlayerMiniMaxIDS
+ * en mode Lazy SMP, per a 1, 2, 4... fils, i el speedup respecte a un fil.
+ *
+ * Arguments opcionals: profunditat (per defecte 6), nombre de posicions
+ * (per defecte 8) i nombre màxim de fils (per defecte tots els nuclis).
+ *
+ * @author jieke
+ */
+public class ProvesLazySMP {
+
+    public static void main(String[] args) {
+        int profunditat = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int numPosicions = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int maxFils = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<GameStatus> posicions = posicions(numPosicions, 7, new Random(7));
+
+        // Escalfament del JIT perquè no penalitzi la primera mesura
+        PlayerMiniMaxIDS escalfament = new PlayerMiniMaxIDS(64, 1);
+        escalfament.setMaxDepth(profunditat);
+        for (GameStatus gs : posicions) {
+            escalfament.move(new GameStatus(gs));
+        }
+
+        double tempsBase = 0;
+        for (int fils = 1; fils <= maxFils; fils *= 2) {
+            PlayerMiniMaxIDS player = new PlayerMiniMaxIDS(64, fils);
+            player.setMaxDepth(profunditat);
+            long total = 0;
+            int profunditatMinima = Integer.MAX_VALUE;
+            for (GameStatus gs : posicions) {
+                long t0 = System.nanoTime();
+                PlayerMove m = player.move(new GameStatus(gs));
+                total += System.nanoTime() - t0;
+                profunditatMinima = Math.min(profunditatMinima, m.getMaxDepthReached());
+            }
+            double ms = total / 1e6 / posicions.size();
+            if (fils == 1) {
+                tempsBase = ms;
+            }
+            System.out.printf("fils=%2d  temps mitjà fins a profunditat %d: %8.1f ms  speedup: %.2f  (profunditat mínima assolida: %d)%n",
+                    fils, profunditat, ms, tempsBase / ms, profunditatMinima);
+        }
+    }
+
+    /**
+     * Posicions de mig joc obtingudes amb tirades aleatòries des del tauler buit.
+     */
+    static List<GameStatus> posicions(int quantes, int mida, Random rnd) {
+        List<GameStatus> res = new ArrayList<>();
+        while (res.size() < quantes) {
+            GameStatus gs = new GameStatus(mida);
+            for (int i = 0; i < 20 && !gs.isGameOver(); i++) {
+                List<Point> moves = gs.getMoves();
+                if (moves.isEmpty()) {
+                    break;
+                }
+                gs.placeStone(moves.get(rnd.nextInt(moves.size())));
+            }
+            if (!gs.isGameOver()) {
+                res.add(gs);
+            }
+        }
+        return res;
+    }
+}
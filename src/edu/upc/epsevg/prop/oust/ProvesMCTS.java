@@ -0,0 +1,51 @@
+package edu.upc.epsevg.prop.oust;
+
+import edu.upc.epsevg.prop.oust.players.HaroLin.PlayerMCTS;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mesura les partides simulades per segon del PlayerMCTS amb l'arbre
+ * compartit per 1, 2, 4... fils en un tauler de mida 7, i l'escalat
+ * respecte a un fil.
+ *
+ * Arguments opcionals: temps per jugada en ms (per defecte 2000), nombre de
+ * posicions (per defecte 4) i nombre màxim de fils (per defecte tots els
+ * nuclis).
+ *
+ * @author jieke
+ */
+public class ProvesMCTS {
+
+    public static void main(String[] args) {
+        long temps = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int numPosicions = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int maxFils = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<GameStatus> posicions = ProvesLazySMP.posicions(numPosicions, 7, new Random(7));
+
+        // Escalfament del JIT perquè no penalitzi la primera mesura
+        PlayerMCTS escalfament = new PlayerMCTS(temps, 1 << 20, 1);
+        for (GameStatus gs : posicions) {
+            escalfament.move(new GameStatus(gs));
+        }
+
+        double base = 0;
+        for (int fils = 1; fils <= maxFils; fils *= 2) {
+            PlayerMCTS player = new PlayerMCTS(temps, 1 << 21, fils);
+            double total = 0;
+            int profunditatMaxima = 0;
+            for (GameStatus gs : posicions) {
+                PlayerMove m = player.move(new GameStatus(gs));
+                total += player.getPartidesPerSegon();
+                profunditatMaxima = Math.max(profunditatMaxima, m.getMaxDepthReached());
+            }
+            double perSegon = total / posicions.size();
+            if (fils == 1) {
+                base = perSegon;
+            }
+            System.out.printf("fils=%2d  partides/s: %10.0f  escalat: %.2f (ideal %d)  profunditat màxima: %d%n",
+                    fils, perSegon, perSegon / base, fils, profunditatMaxima);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package edu.upc.epsevg.prop.oust;
+
+import edu.upc.epsevg.prop.oust.players.HaroLin.PlayerMCTS;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comprova que el PlayerMCTS juga les posicions on a qui li toca no té cap
+ * moviment legal però la partida no s'ha acabat (després d'algunes
+ * captures les regles ho permeten), i les posicions de poques tirades
+ * abans, on l'arbre arriba a expandir un node sense moviments.
+ *
+ * Les posicions es busquen amb partides aleatòries en taulers de mida 5.
+ * Acaba amb codi 1 si alguna jugada falla.
+ *
+ * Arguments opcionals: nombre de posicions sense moviments (per defecte 5)
+ * i temps per jugada en ms (per defecte 200).
+ *
+ * @author jieke
+ */
+public class ProvesSenseMoviments {
+
+    /** Tirades enrere des de cada posició sense moviments que també es juguen. */
+    private static final int TIRADES_ENRERE = 4;
+
+    public static void main(String[] args) {
+        int quantes = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long temps = args.length > 1 ? Long.parseLong(args[1]) : 200;
+
+        Random rnd = new Random(7);
+        int jugades = 0;
+        int errors = 0;
+        for (int trobades = 0; trobades < quantes; ) {
+            List<Point> historia = sensemoviments(5, rnd);
+            if (historia == null) {
+                continue;
+            }
+            trobades++;
+            for (int enrere = 0; enrere <= TIRADES_ENRERE && enrere <= historia.size(); enrere++) {
+                GameStatus gs = new GameStatus(5);
+                for (Point p : historia.subList(0, historia.size() - enrere)) {
+                    gs.placeStone(p);
+                }
+                for (int fils = 1; fils <= 2; fils++) {
+                    PlayerMCTS player = new PlayerMCTS(temps, 1 << 16, fils);
+                    player.setLlibre(null);
+                    try {
+                        player.move(new GameStatus(gs));
+                    } catch (RuntimeException ex) {
+                        errors++;
+                        System.out.println("Error a " + enrere + " tirades de la posició " + trobades
+                                + " amb " + fils + " fils: " + ex);
+                    } finally {
+                        player.close();
+                    }
+                    jugades++;
+                }
+            }
+        }
+        System.out.println("Jugades: " + jugades + ", errors: " + errors);
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Juga una partida aleatòria fins que a qui li toca no té moviments.
+     *
+     * @return les pedres posades fins aquella posició, o null si la partida
+     *         s'acaba abans
+     */
+    static List<Point> sensemoviments(int mida, Random rnd) {
+        GameStatus gs = new GameStatus(mida);
+        List<Point> historia = new ArrayList<>();
+        while (!gs.isGameOver()) {
+            List<Point> moves = gs.getMoves();
+            if (moves.isEmpty()) {
+                return historia;
+            }
+            Point p = moves.get(rnd.nextInt(moves.size()));
+            gs.placeStone(p);
+            historia.add(p);
+        }
+        return null;
+    }
+}
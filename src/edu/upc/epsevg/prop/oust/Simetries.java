@@ -0,0 +1,98 @@
+package edu.upc.epsevg.prop.oust;
+
+/**
+ * Las 12 simetrías del tablero hexagonal (6 rotaciones, con y sin
+ * reflexión) como permutaciones de casillas.
+ *
+ * <p>Con las coordenadas centradas {@code x = fila - (n-1)},
+ * {@code y = columna - (n-1)} los vecinos de una casilla son
+ * {@code (±1,0), (0,±1), ±(1,1)}, así que la rotación de 60 grados es
+ * {@code (x,y) -> (x-y, x)} y la reflexión {@code (x,y) -> (y,x)}. La
+ * simetría {@code s} es la rotación {@code s % 6} veces, precedida de la
+ * reflexión si {@code s >= 6}; la 0 es la identidad.</p>
+ *
+ * <p>Las tablas se calculan una vez por tamaño y se comparten.</p>
+ *
+ * @author jieke
+ */
+public class Simetries {
+
+    /** Número de simetrías del hexágono. */
+    public static final int NUM_SIMETRIES = 12;
+    /** La simetría identidad. */
+    public static final int IDENTITAT = 0;
+
+    private static final Simetries[] PER_MIDA = new Simetries[32];
+
+    private final int[][] imatge;
+    private final int[][] inversa;
+
+    private Simetries(int n) {
+        MyStatus tauler = new MyStatus(n);
+        int caselles = tauler.getCellCount();
+        int centre = n - 1;
+        imatge = new int[NUM_SIMETRIES][caselles];
+        inversa = new int[NUM_SIMETRIES][caselles];
+        for (int s = 0; s < NUM_SIMETRIES; s++) {
+            for (int c = 0; c < caselles; c++) {
+                int x = tauler.getRow(c) - centre;
+                int y = tauler.getCol(c) - centre;
+                if (s >= 6) {
+                    int t = x; x = y; y = t;
+                }
+                for (int r = 0; r < s % 6; r++) {
+                    int t = x - y; y = x; x = t;
+                }
+                int d = tauler.toCell(x + centre, y + centre);
+                imatge[s][c] = d;
+                inversa[s][d] = c;
+            }
+        }
+    }
+
+    /**
+     * Tablas de un tamaño de tablero.
+     *
+     * @param n lado del hexágono
+     * @return simetrías del tablero
+     */
+    public static synchronized Simetries de(int n) {
+        if (PER_MIDA[n] == null) {
+            PER_MIDA[n] = new Simetries(n);
+        }
+        return PER_MIDA[n];
+    }
+
+    /**
+     * Casilla a la que va una casilla con una simetría.
+     *
+     * @param s simetría
+     * @param cell casilla
+     * @return imagen de la casilla
+     */
+    public int aplica(int s, int cell) {
+        return imatge[s][cell];
+    }
+
+    /**
+     * Casilla de la que viene una casilla con una simetría (la inversa de
+     * {@link #aplica}).
+     *
+     * @param s simetría
+     * @param cell imagen
+     * @return casilla original
+     */
+    public int desfa(int s, int cell) {
+        return inversa[s][cell];
+    }
+
+    /**
+     * Permutación de una simetría (compartida, no modificar).
+     *
+     * @param s simetría
+     * @return {@code permutacio(s)[c]} es la imagen de la casilla {@code c}
+     */
+    public int[] permutacio(int s) {
+        return imatge[s];
+    }
+}
@@ -0,0 +1,180 @@
+package edu.upc.epsevg.prop.oust;
+
+import java.util.Locale;
+
+/**
+ * Sequential probability ratio test between two hypotheses about the Elo
+ * difference of a candidate against a baseline: H0 (elo = elo0) and H1
+ * (elo = elo1). After every game the log-likelihood ratio (LLR) is compared
+ * with the bounds given by the error rates alpha (accepting H1 when H0 is
+ * true) and beta (accepting H0 when H1 is true).
+ *
+ * <p>The LLR is the usual normal approximation over the game scores
+ * (win 1, tie 1/2, loss 0), as in Fishtest / cutechess:
+ * <code>LLR = N (s1 - s0) (2 s - s0 - s1) / (2 var)</code>, where s is the
+ * mean score, var its variance per game and s0, s1 the expected scores of
+ * the two hypotheses. An outcome without games counts as half a game, so
+ * that a run of wins (or Oust, where ties are very rare) still has a
+ * variance.</p>
+ *
+ * @author jieke
+ */
+public class Sprt {
+
+    public enum Decision {
+        /** Not enough games yet. */
+        CONTINUE,
+        /** The candidate is not better than elo0: reject the change. */
+        H0,
+        /** The candidate is at least elo1 better: accept the change. */
+        H1
+    }
+
+    private final double elo0;
+    private final double elo1;
+    private final double alpha;
+    private final double beta;
+    private int wins;
+    private int ties;
+    private int losses;
+    private Decision decision = Decision.CONTINUE;
+
+    /**
+     * @param elo0 Elo difference of H0
+     * @param elo1 Elo difference of H1 (greater than elo0)
+     * @param alpha probability of accepting H1 when H0 is true
+     * @param beta probability of accepting H0 when H1 is true
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("SPRT: elo0 < elo1 and 0 < alpha, beta < 1");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Adds a game seen from the candidate and updates the decision. Once
+     * taken, the decision does not change.
+     *
+     * @param score 1 win, 0.5 tie, 0 loss
+     * @return the decision after the game
+     */
+    public synchronized Decision update(double score) {
+        if (score > 0.5) {
+            wins++;
+        } else if (score < 0.5) {
+            losses++;
+        } else {
+            ties++;
+        }
+        if (decision == Decision.CONTINUE) {
+            double llr = llr();
+            if (llr >= upperBound()) {
+                decision = Decision.H1;
+            } else if (llr <= lowerBound()) {
+                decision = Decision.H0;
+            }
+        }
+        return decision;
+    }
+
+    public synchronized Decision getDecision() {
+        return decision;
+    }
+
+    public synchronized int getGames() {
+        return wins + ties + losses;
+    }
+
+    /**
+     * @return log-likelihood ratio of H1 against H0
+     */
+    public synchronized double llr() {
+        if (getGames() == 0) {
+            return 0;
+        }
+        double[] c = regularized();
+        double n = c[0] + c[1] + c[2];
+        double s = (c[0] + 0.5 * c[1]) / n;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return n * (s1 - s0) * (2 * s - s0 - s1) / (2 * variance(c, s));
+    }
+
+    /** @return LLR under which H0 is accepted */
+    public double lowerBound() {
+        return Math.log(beta / (1 - alpha));
+    }
+
+    /** @return LLR over which H1 is accepted */
+    public double upperBound() {
+        return Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * @return Elo difference estimated from the mean score
+     */
+    public synchronized double elo() {
+        return elo(score());
+    }
+
+    /**
+     * @return half width of the 95% interval of the Elo estimate
+     */
+    public synchronized double eloError() {
+        if (getGames() < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double[] c = regularized();
+        double n = c[0] + c[1] + c[2];
+        double s = score();
+        double error = 1.96 * Math.sqrt(variance(c, s) / n);
+        return (elo(s + error) - elo(s - error)) / 2;
+    }
+
+    /**
+     * Wins, ties and losses, with half a game in the outcomes without games.
+     */
+    private double[] regularized() {
+        return new double[]{
+            wins > 0 ? wins : 0.5,
+            ties > 0 ? ties : 0.5,
+            losses > 0 ? losses : 0.5
+        };
+    }
+
+    /**
+     * Variance per game of the score around s.
+     */
+    private static double variance(double[] c, double s) {
+        double n = c[0] + c[1] + c[2];
+        return (c[0] * (1 - s) * (1 - s) + c[1] * (0.5 - s) * (0.5 - s) + c[2] * s * s) / n;
+    }
+
+    private double score() {
+        int n = getGames();
+        return n == 0 ? 0.5 : (wins + 0.5 * ties) / n;
+    }
+
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    static double elo(double score) {
+        // Clamped so that all wins or all losses still give a number
+        double s = Math.min(Math.max(score, 1e-3), 1 - 1e-3);
+        return -400 * Math.log10(1 / s - 1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT,
+                "SPRT elo0=%.1f elo1=%.1f alpha=%.3f beta=%.3f: %s%n"
+                + "  games %d (+%d =%d -%d)  LLR %.2f [%.2f, %.2f]  Elo %.1f +- %.1f",
+                elo0, elo1, alpha, beta, decision, getGames(), wins, ties, losses,
+                llr(), lowerBound(), upperBound(), elo(), eloError());
+    }
+}
@@ -0,0 +1,322 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import edu.upc.epsevg.prop.oust.PlayerType;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cadenas de capturas de {@link PlayerMiniMax} y {@link PlayerMiniMaxIDS}:
+ * la búsqueda de quiescencia en la frontera y la construcción del turno
+ * completo a partir del primer movimiento elegido.
+ *
+ * <p>Cada jugador (y cada hilo ayudante) tiene la suya, con sus propios
+ * buffers. Lo que cambia de un jugador a otro (la evaluación, la cuenta de
+ * nodos con su parada y la continuación que dejó la búsqueda) llega por
+ * {@link Ganxos}.</p>
+ *
+ * @author jieke
+ */
+final class CercaCaptures {
+
+    /** Secuencias de capturas que se comparan al completar el turno. */
+    static final int LIMIT_SEQUENCIES = 1024;
+    /** Niveles máximos de la búsqueda de quiescencia. */
+    static final int MAX_QUIESCENCIA = 4;
+    /** Capturas que se siguen en cada nodo de quiescencia. */
+    private static final int QS_AMPLADA = 2;
+    /** Lo que vale en la evaluación cada piedra capturada al rival. */
+    private static final double VALOR_PEDRA = 110;
+    /** Margen de la poda delta por los términos posicionales. */
+    private static final double MARGE_DELTA = 100;
+
+    /**
+     * Lo que pone cada jugador.
+     */
+    interface Ganxos {
+
+        /**
+         * @param gs estado del juego
+         * @return valor heurístico del estado para el jugador
+         */
+        double evaluar(GameStatusTunned gs);
+
+        /**
+         * Cuenta un nodo de quiescencia.
+         *
+         * @return falso si la búsqueda se ha de parar
+         */
+        boolean nodeQuiescencia();
+
+        /**
+         * @return cierto si la búsqueda ya se ha parado
+         */
+        default boolean aturat() {
+            return false;
+        }
+
+        /**
+         * Genera las capturas de la posición (el jugador puede medirlo).
+         *
+         * @param gs estado del juego
+         * @param moviments buffer de las capturas
+         * @return número de capturas
+         */
+        default int captures(GameStatusTunned gs, int[] moviments) {
+            return gs.getCaptureMoves(moviments);
+        }
+
+        /**
+         * Continuación que la búsqueda dejó para la posición, si la hay.
+         *
+         * @param gs estado con el jugador a media cadena
+         * @return la casilla, o -1
+         */
+        default int continuacio(GameStatusTunned gs) {
+            return -1;
+        }
+    }
+
+    private final Ganxos ganxos;
+    private PlayerType color;
+    private int caselles = -1;
+    private int[][] movimentsQuiescencia;
+    private int[][] guanysQuiescencia;
+    private int[] tancaments;
+    private SequenciesCaptura cadenes;
+
+    /**
+     * @param ganxos lo que pone el jugador
+     */
+    CercaCaptures(Ganxos ganxos) {
+        this.ganxos = ganxos;
+    }
+
+    /**
+     * Prepara una búsqueda: el color que maximiza y los buffers del tablero.
+     *
+     * @param color jugador para el que se busca
+     * @param caselles casillas del tablero
+     */
+    void prepara(PlayerType color, int caselles) {
+        this.color = color;
+        if (caselles != this.caselles) {
+            this.caselles = caselles;
+            movimentsQuiescencia = new int[MAX_QUIESCENCIA][caselles];
+            guanysQuiescencia = new int[MAX_QUIESCENCIA][caselles];
+            tancaments = new int[caselles];
+            cadenes = new SequenciesCaptura(caselles);
+        }
+    }
+
+    /**
+    * Búsqueda de quiescencia en la frontera. Si la última tirada capturó,
+    * el mismo jugador vuelve a tirar y cortar aquí dejaría la cadena de
+    * capturas a medias: se siguen solo las colocaciones que capturan hasta
+    * que el jugador cierra la cadena. Si la última tirada no capturó la
+    * posición ya es tranquila y se evalúa directamente.
+    *
+    * <p>El jugador con el turno siempre puede plantarse con una tirada sin
+    * captura, así que la evaluación estática es una cota (stand-pat). Las
+    * capturas se ordenan por las piedras enemigas vecinas y solo se siguen
+    * las mejores; las que, incluso sumando un margen, no pueden mejorar la
+    * ventana se descartan sin seguir buscando (poda delta).</p>
+    *
+    * @param gs estado del juego
+    * @param alpha mejor valor para el jugador maximizador
+    * @param beta mejor valor para el jugador minimizador
+    * @param maximitzador indica si el nodo actual es maximizador
+    * @param nivell niveles de quiescencia ya recorridos
+    * @return valor heurístico del estado
+    */
+    double quiescencia(GameStatusTunned gs, double alpha, double beta, boolean maximitzador, int nivell) {
+        double standPat = ganxos.evaluar(gs);
+        if (!gs.lastMoveCaptured() || nivell >= MAX_QUIESCENCIA || ganxos.aturat()) {
+            return standPat;
+        }
+        if (maximitzador) {
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+        } else {
+            if (standPat <= alpha) {
+                return standPat;
+            }
+            beta = Math.min(beta, standPat);
+        }
+
+        int[] moviments = movimentsQuiescencia[nivell];
+        int[] guanys = guanysQuiescencia[nivell];
+        int numMoviments = ganxos.captures(gs, moviments);
+        PlayerType rival = gs.getCurrentPlayer().opposite();
+        int pedresRival = gs.getStoneCount(rival);
+
+        // Estimación estática de lo que captura cada tirada
+        int torn = gs.getTurn();
+        for (int i = 0; i < numMoviments; i++) {
+            guanys[i] = OrdenacioMoviments.enemicsVeins(gs, moviments[i], torn);
+        }
+
+        // Solo se siguen las QS_AMPLADA capturas más prometedoras
+        double millor = standPat;
+        int amplada = Math.min(numMoviments, QS_AMPLADA);
+        for (int i = 0; i < amplada; i++) {
+            int m = i;
+            for (int j = i + 1; j < numMoviments; j++) {
+                if (guanys[j] > guanys[m]) {
+                    m = j;
+                }
+            }
+            int t = moviments[i]; moviments[i] = moviments[m]; moviments[m] = t;
+            t = guanys[i]; guanys[i] = guanys[m]; guanys[m] = t;
+            if (!ganxos.nodeQuiescencia()) {
+                break;
+            }
+
+            gs.placeStone(moviments[i]);
+            double eval;
+            if (gs.isGameOver()) {
+                eval = ganxos.evaluar(gs);
+            } else {
+                // Poda delta: si ni con un margen las piedras capturadas
+                // llegan a la ventana, no vale la pena seguir la cadena
+                double optimista = (pedresRival - gs.getStoneCount(rival)) * VALOR_PEDRA + MARGE_DELTA;
+                if (maximitzador ? standPat + optimista <= alpha : standPat - optimista >= beta) {
+                    gs.undo();
+                    continue;
+                }
+                boolean proximEsMax = (gs.getCurrentPlayer() == color);
+                eval = quiescencia(gs, alpha, beta, proximEsMax, nivell + 1);
+            }
+            gs.undo();
+
+            if (maximitzador) {
+                millor = Math.max(millor, eval);
+                alpha = Math.max(alpha, eval);
+            } else {
+                millor = Math.min(millor, eval);
+                beta = Math.min(beta, eval);
+            }
+            if (beta <= alpha) {
+                break;
+            }
+        }
+        return millor;
+    }
+
+    /**
+    * Construye el turno completo a partir del primer movimiento elegido.
+    * Si el movimiento captura, el turno sigue con la continuación que dejó
+    * la búsqueda ({@link Ganxos#continuacio}) y, a partir de donde no
+    * llegó, con la mejor secuencia de capturas de {@link SequenciesCaptura}
+    * (hasta {@link #LIMIT_SEQUENCIES}) según la evaluación; el turno se
+    * cierra con la tirada sin captura que mejor evalúa. Todo se hace sobre
+    * el propio estado, que queda como estaba.
+    * Si después de esa tirada el rival no tiene movimientos, el turno vuelve
+    * al mismo jugador y sigue de la misma manera.
+    *
+    * @param gs estado actual del juego
+    * @param primerMoviment casilla del primer movimiento del turno
+    * @return lista de movimientos que forman el turno
+    */
+    List<Point> completaTorn(GameStatusTunned gs, int primerMoviment) {
+        List<Point> sequencia = new ArrayList<>();
+        if (primerMoviment < 0) {
+            return sequencia;
+        }
+
+        PlayerType jugador = gs.getCurrentPlayer();
+        int aplicades = 0;
+        int moviment = primerMoviment;
+        while (moviment >= 0) {
+            sequencia.add(gs.toPoint(moviment));
+            gs.placeStone(moviment);
+            aplicades++;
+            // El turno sigue tras una captura y también si el rival se queda
+            // sin movimientos: entonces vuelve a mover el mismo jugador
+            if (gs.getCurrentPlayer() != jugador || gs.isGameOver()) {
+                break;
+            }
+            // Mientras la búsqueda llegó, su continuación
+            moviment = ganxos.continuacio(gs);
+            if (moviment >= 0) {
+                continue;
+            }
+            aplicades += afegeixMillorSequencia(gs, sequencia);
+            if (gs.isGameOver()) {
+                break;
+            }
+            moviment = millorTancament(gs);
+        }
+
+        for (int i = 0; i < aplicades; i++) {
+            gs.undo();
+        }
+        return sequencia;
+    }
+
+    /**
+    * Aplica la secuencia de capturas que deja mejor evaluación, o ninguna si
+    * plantarse es mejor.
+    *
+    * @param gs estado con el jugador a media cadena
+    * @param sequencia lista a la que se añaden las capturas
+    * @return número de tiradas aplicadas sobre {@code gs}
+    */
+    private int afegeixMillorSequencia(GameStatusTunned gs, List<Point> sequencia) {
+        double millorValor = ganxos.evaluar(gs);
+        int[] millor = null;
+        cadenes.inicia(gs);
+        while (cadenes.generades() < LIMIT_SEQUENCIES && cadenes.seguent()) {
+            double valor = ganxos.evaluar(gs);
+            if (valor > millorValor) {
+                millorValor = valor;
+                millor = Arrays.copyOf(cadenes.tirades(), cadenes.longitud());
+            }
+        }
+        cadenes.atura();
+
+        if (millor == null) {
+            return 0;
+        }
+        for (int moviment : millor) {
+            sequencia.add(gs.toPoint(moviment));
+            gs.placeStone(moviment);
+        }
+        return millor.length;
+    }
+
+    /**
+    * Tirada que cierra el turno: la que mejor evalúa de las que no capturan
+    * o, si todas capturan, de todas.
+    *
+    * @param gs estado con el jugador a media cadena
+    * @return la casilla, o -1 si no hay movimientos
+    */
+    private int millorTancament(GameStatusTunned gs) {
+        int[] moviments = tancaments;
+        int numMoviments = gs.getMoves(moviments);
+        int millor = -1;
+        boolean millorCaptura = true;
+        double millorValor = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numMoviments; i++) {
+            int moviment = moviments[i];
+            boolean captura = gs.isCapture(moviment);
+            if (captura && !millorCaptura) {
+                continue;
+            }
+            gs.placeStone(moviment);
+            double valor = ganxos.evaluar(gs);
+            gs.undo();
+            if (valor > millorValor || (millorCaptura && !captura)) {
+                millorValor = valor;
+                millor = moviment;
+                millorCaptura = captura;
+            }
+        }
+        return millor;
+    }
+}
@@ -0,0 +1,174 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import edu.upc.epsevg.prop.oust.PlayerMove;
+import edu.upc.epsevg.prop.oust.PlayerType;
+import java.awt.Point;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Construcción offline del libro de aperturas ({@link LlibreObertures}).
+ *
+ * <p>Juega partidas contra sí mismo desde {@code new GameStatus(mida)} con
+ * {@link PlayerMiniMaxIDS} y mucho tiempo por jugada, durante los primeros
+ * turnos. Cada turno buscado se guarda tirada a tirada con la clave
+ * canónica de la posición en la que se hizo; si la posición, o una
+ * simétrica, ya está en el libro no se vuelve a buscar. Para cubrir más
+ * de una línea, cada partida (salvo la primera) juega un turno al azar en
+ * un punto al azar y el libro sigue a partir de la posición a la que se
+ * llega.</p>
+ *
+ * <p>Uso:</p>
+ * <pre>
+ *   java -cp ... edu.upc.epsevg.prop.oust.players.HaroLin.ConstructorLlibre
+ *        [fitxer] [partides] [torns] [ms] [mida]
+ * </pre>
+ *
+ * @author jieke
+ */
+public class ConstructorLlibre {
+
+    private final int mida;
+    private final int torns;
+    private final PlayerMiniMaxIDS cercador;
+    private final Random rnd = new Random(0x0057L);
+    private final Map<Long, Short> entrades = new TreeMap<>();
+    private final Map<Long, Short> profunditats = new TreeMap<>();
+
+    /**
+     * Crea un constructor de libro.
+     *
+     * @param mida tamaño del tablero
+     * @param torns turnos de cada partida que entran en el libro
+     * @param milisegons tiempo de búsqueda por turno
+     */
+    public ConstructorLlibre(int mida, int torns, long milisegons) {
+        this.mida = mida;
+        this.torns = torns;
+        this.cercador = new PlayerMiniMaxIDS();
+        this.cercador.setTempsPerJugada(milisegons);
+        this.cercador.setLlibre(null);
+    }
+
+    /**
+     * Juega una partida y añade al libro sus primeros turnos.
+     *
+     * @param desviacio turno en el que se juega al azar, o -1
+     */
+    public void juga(int desviacio) {
+        GameStatus gs = new GameStatus(mida);
+        for (int t = 0; t < torns && !gs.isGameOver(); t++) {
+            if (t == desviacio) {
+                tornAtzar(gs);
+                continue;
+            }
+            GameStatusTunned estat = new GameStatusTunned(gs);
+            estat.activaSimetries();
+            if (entrades.containsKey(estat.getHashCanonic())) {
+                // Ya está: se sigue la línea del libro
+                PlayerType jugador = estat.getCurrentPlayer();
+                do {
+                    Short canonica = entrades.get(estat.getHashCanonic());
+                    if (canonica == null) {
+                        break;
+                    }
+                    int casella = estat.getSimetries().desfa(estat.getSimetriaCanonica(), canonica);
+                    gs.placeStone(estat.toPoint(casella));
+                    estat.placeStone(casella);
+                } while (!gs.isGameOver() && gs.getCurrentPlayer() == jugador);
+                if (!gs.isGameOver() && gs.getCurrentPlayer() == jugador) {
+                    afegeixBuscat(gs);
+                }
+                continue;
+            }
+            afegeixBuscat(gs);
+        }
+    }
+
+    /**
+     * Busca el turno de la posición, lo guarda en el libro y lo juega.
+     */
+    private void afegeixBuscat(GameStatus gs) {
+        PlayerMove pm = cercador.move(gs);
+        GameStatusTunned estat = new GameStatusTunned(gs);
+        estat.activaSimetries();
+        for (Point p : pm.getPoints()) {
+            int casella = estat.toCell(p);
+            long clau = estat.getHashCanonic();
+            entrades.put(clau, (short) estat.getSimetries().aplica(estat.getSimetriaCanonica(), casella));
+            profunditats.put(clau, (short) pm.getMaxDepthReached());
+            estat.placeStone(casella);
+            gs.placeStone(p);
+        }
+    }
+
+    /**
+     * Juega un turno al azar (capturas incluidas).
+     */
+    private void tornAtzar(GameStatus gs) {
+        PlayerType jugador = gs.getCurrentPlayer();
+        do {
+            List<Point> moviments = gs.getMoves();
+            if (moviments.isEmpty()) {
+                return;
+            }
+            gs.placeStone(moviments.get(rnd.nextInt(moviments.size())));
+        } while (!gs.isGameOver() && gs.getCurrentPlayer() == jugador);
+    }
+
+    /**
+     * Escribe el libro ordenado por clave.
+     *
+     * @param fitxer fichero de salida
+     * @throws IOException si no se puede escribir
+     */
+    public void escriu(String fitxer) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fitxer)))) {
+            out.writeInt(LlibreObertures.MAGIC);
+            out.writeInt(LlibreObertures.VERSIO);
+            out.writeInt(mida);
+            out.writeInt(entrades.size());
+            // TreeMap<Long> ordena con signo, como la búsqueda binaria
+            for (Map.Entry<Long, Short> e : entrades.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeShort(e.getValue());
+                out.writeShort(profunditats.get(e.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Número de posiciones en el libro.
+     *
+     * @return entradas
+     */
+    public int getEntrades() {
+        return entrades.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String fitxer = args.length > 0 ? args[0] : LlibreObertures.FITXER_PER_DEFECTE;
+        int partides = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int torns = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+        long ms = args.length > 3 ? Long.parseLong(args[3]) : 20_000;
+        int mida = args.length > 4 ? Integer.parseInt(args[4]) : 7;
+
+        ConstructorLlibre constructor = new ConstructorLlibre(mida, torns, ms);
+        for (int i = 0; i < partides; i++) {
+            constructor.juga(i == 0 ? -1 : constructor.rnd.nextInt(Math.max(1, torns - 1)));
+            System.out.println("Partida " + (i + 1) + "/" + partides + ": "
+                    + constructor.getEntrades() + " posiciones");
+            // Se escribe tras cada partida para poder parar cuando se quiera
+            constructor.escriu(fitxer);
+        }
+    }
+}
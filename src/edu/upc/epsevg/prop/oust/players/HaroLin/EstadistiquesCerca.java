@@ -0,0 +1,391 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Estadísticas de la búsqueda de una jugada y de cada una de sus
+ * iteraciones.
+ *
+ * <p>Los contadores son campos {@code long} sin sincronizar que cada hilo
+ * de búsqueda incrementa en su propia instancia; al acabar la jugada se
+ * suman con {@link #suma}. Los tiempos de generación de movimientos, copia
+ * del estado y evaluación se miden por muestreo (una de cada
+ * {@link #MOSTREIG} llamadas) y se extrapolan, porque leer el reloj en cada
+ * nodo costaría más que lo que se mide.</p>
+ *
+ * @author jieke
+ */
+public class EstadistiquesCerca {
+
+    /** Generación de movimientos ({@code getMoves}). */
+    public static final int GENERACIO = 0;
+    /** Copia del estado. */
+    public static final int COPIA = 1;
+    /** Función de evaluación. */
+    public static final int AVALUACIO = 2;
+    /** Una de cada tantas llamadas se cronometra (potencia de dos). */
+    public static final int MOSTREIG = 1024;
+
+    private static final String[] NOMS_TEMPS = {"generacio", "copia", "avaluacio"};
+
+    /**
+     * Una iteración completa de la profundización iterativa.
+     */
+    public static class Iteracio {
+        private final int profunditat;
+        private final long nodes;
+        private final long tempsNs;
+        private final double ebf;
+        private final int moviment;
+        private final double valor;
+
+        Iteracio(int profunditat, long nodes, long tempsNs, double ebf, int moviment, double valor) {
+            this.profunditat = profunditat;
+            this.nodes = nodes;
+            this.tempsNs = tempsNs;
+            this.ebf = ebf;
+            this.moviment = moviment;
+            this.valor = valor;
+        }
+
+        public int getProfunditat() {
+            return profunditat;
+        }
+
+        /** @return nodos de la iteración (sin los de las anteriores) */
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getTempsNs() {
+            return tempsNs;
+        }
+
+        /** @return nodos respecto a la iteración anterior, o 0 en la primera */
+        public double getEbf() {
+            return ebf;
+        }
+
+        public int getMoviment() {
+            return moviment;
+        }
+
+        public double getValor() {
+            return valor;
+        }
+    }
+
+    // Contadores de la búsqueda (los incrementa directamente el jugador)
+    long nodesInterns;
+    long talls;
+    long tallsPrimer;
+    long consultesTT;
+    long encertsTT;
+    long colisionsTT;
+
+    private final long[] crides = new long[NOMS_TEMPS.length];
+    private final long[] mostres = new long[NOMS_TEMPS.length];
+    private final long[] tempsMostres = new long[NOMS_TEMPS.length];
+
+    private String origen = "cerca";
+    private long nodes;
+    private long nodesQuiescencia;
+    private long tempsNs;
+    private int profunditat;
+    private String ponderacio;
+    private final List<Iteracio> iteracions = new ArrayList<>();
+
+    /**
+     * Pone todo a cero para una jugada nueva.
+     */
+    public void reinicia() {
+        nodesInterns = 0;
+        talls = 0;
+        tallsPrimer = 0;
+        consultesTT = 0;
+        encertsTT = 0;
+        colisionsTT = 0;
+        for (int i = 0; i < crides.length; i++) {
+            crides[i] = 0;
+            mostres[i] = 0;
+            tempsMostres[i] = 0;
+        }
+        origen = "cerca";
+        nodes = 0;
+        nodesQuiescencia = 0;
+        tempsNs = 0;
+        profunditat = 0;
+        ponderacio = null;
+        iteracions.clear();
+    }
+
+    /**
+     * Empieza una medida de tiempo por muestreo.
+     *
+     * @param tipus {@link #GENERACIO}, {@link #COPIA} o {@link #AVALUACIO}
+     * @return instante de inicio, o 0 si esta llamada no se cronometra
+     */
+    public long inici(int tipus) {
+        return (crides[tipus]++ & (MOSTREIG - 1)) == 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Acaba una medida empezada con {@link #inici}.
+     *
+     * @param tipus el mismo tipo
+     * @param inici lo que devolvió {@link #inici}
+     */
+    public void fi(int tipus, long inici) {
+        if (inici != 0) {
+            tempsMostres[tipus] += System.nanoTime() - inici;
+            mostres[tipus]++;
+        }
+    }
+
+    /**
+     * Suma los contadores de otro hilo de la misma jugada.
+     *
+     * @param altre estadísticas del otro hilo
+     */
+    public void suma(EstadistiquesCerca altre) {
+        nodesInterns += altre.nodesInterns;
+        talls += altre.talls;
+        tallsPrimer += altre.tallsPrimer;
+        consultesTT += altre.consultesTT;
+        encertsTT += altre.encertsTT;
+        colisionsTT += altre.colisionsTT;
+        for (int i = 0; i < crides.length; i++) {
+            crides[i] += altre.crides[i];
+            mostres[i] += altre.mostres[i];
+            tempsMostres[i] += altre.tempsMostres[i];
+        }
+    }
+
+    /**
+     * Registra una iteración completa del hilo principal.
+     *
+     * @param profunditat profundidad
+     * @param nodes nodos de la iteración
+     * @param tempsNs duración
+     * @param moviment mejor movimiento
+     * @param valor valor de la raíz
+     */
+    public void afegeixIteracio(int profunditat, long nodes, long tempsNs, int moviment, double valor) {
+        double ebf = 0;
+        if (!iteracions.isEmpty()) {
+            long anteriors = iteracions.get(iteracions.size() - 1).nodes;
+            ebf = anteriors > 0 ? (double) nodes / anteriors : 0;
+        }
+        iteracions.add(new Iteracio(profunditat, nodes, tempsNs, ebf, moviment, valor));
+    }
+
+    /**
+     * Cierra la jugada con los totales.
+     *
+     * @param origen de dónde sale la jugada: "cerca", "llibre" o "final"
+     * @param nodes nodos de todos los hilos, quiescencia incluida
+     * @param nodesQuiescencia nodos de quiescencia
+     * @param profunditat profundidad completada
+     * @param tempsNs duración de la jugada
+     */
+    public void tanca(String origen, long nodes, long nodesQuiescencia, int profunditat, long tempsNs) {
+        this.origen = origen;
+        this.nodes = nodes;
+        this.nodesQuiescencia = nodesQuiescencia;
+        this.profunditat = profunditat;
+        this.tempsNs = tempsNs;
+    }
+
+    /**
+     * Anota cómo le fue a la ponderación anterior a la jugada.
+     *
+     * @param ponderacio "acierto", "respuesta en la tabla" o "fallo"
+     */
+    public void setPonderacio(String ponderacio) {
+        this.ponderacio = ponderacio;
+    }
+
+    /** @return resultado de la ponderación, o {@code null} si no se ponderó */
+    public String getPonderacio() {
+        return ponderacio;
+    }
+
+    public String getOrigen() {
+        return origen;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNodesQuiescencia() {
+        return nodesQuiescencia;
+    }
+
+    public int getProfunditat() {
+        return profunditat;
+    }
+
+    public long getTempsNs() {
+        return tempsNs;
+    }
+
+    /** @return nodos por segundo de la jugada */
+    public double getNodesPerSegon() {
+        return tempsNs > 0 ? nodes * 1e9 / tempsNs : 0;
+    }
+
+    /** @return fracción de los nodos internos que acaban en poda */
+    public double getTaxaTall() {
+        return nodesInterns > 0 ? (double) talls / nodesInterns : 0;
+    }
+
+    /** @return fracción de las podas que hace el primer movimiento */
+    public double getTaxaTallPrimer() {
+        return talls > 0 ? (double) tallsPrimer / talls : 0;
+    }
+
+    public long getConsultesTT() {
+        return consultesTT;
+    }
+
+    public long getEncertsTT() {
+        return encertsTT;
+    }
+
+    /** @return consultas fallidas con el cubo ocupado por otras posiciones */
+    public long getColisionsTT() {
+        return colisionsTT;
+    }
+
+    /** @return factor de ramificación efectivo de la última iteración, o 0 */
+    public double getEbf() {
+        return iteracions.isEmpty() ? 0 : iteracions.get(iteracions.size() - 1).ebf;
+    }
+
+    /**
+     * Tiempo estimado (extrapolando las muestras) de un tipo de operación.
+     *
+     * @param tipus {@link #GENERACIO}, {@link #COPIA} o {@link #AVALUACIO}
+     * @return nanosegundos
+     */
+    public long getTempsEstimatNs(int tipus) {
+        return mostres[tipus] > 0 ? tempsMostres[tipus] * crides[tipus] / mostres[tipus] : 0;
+    }
+
+    /** @return iteraciones completas, de menos a más profundas */
+    public List<Iteracio> getIteracions() {
+        return Collections.unmodifiableList(iteracions);
+    }
+
+    /**
+     * Resumen de una línea para la consola.
+     *
+     * @return texto
+     */
+    public String resum() {
+        return String.format(Locale.ROOT,
+                "IDS - %s, Profundidad: %d, Nodos: %d (quiescencia: %d), %.0f nodos/s, "
+                + "podas %.1f%% (primero %.1f%%), TT %d/%d (colisiones %d), EBF %.2f",
+                origen, profunditat, nodes, nodesQuiescencia, getNodesPerSegon(),
+                100 * getTaxaTall(), 100 * getTaxaTallPrimer(), encertsTT, consultesTT,
+                colisionsTT, getEbf())
+                + (ponderacio != null ? ", ponderación: " + ponderacio : "");
+    }
+
+    /**
+     * Objeto JSON (una línea) de la jugada, con sus iteraciones.
+     *
+     * @param jugador nombre del jugador
+     * @param jugada número de jugada del jugador
+     * @return texto JSON
+     */
+    public String json(String jugador, long jugada) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"jugador\":\"").append(jugador.replace("\"", "'")).append('"')
+          .append(",\"jugada\":").append(jugada)
+          .append(",\"origen\":\"").append(origen).append('"')
+          .append(",\"profunditat\":").append(profunditat)
+          .append(",\"nodes\":").append(nodes)
+          .append(",\"nodesQuiescencia\":").append(nodesQuiescencia)
+          .append(",\"tempsMs\":").append(format(tempsNs / 1e6))
+          .append(",\"nodesPerSegon\":").append(format(getNodesPerSegon()))
+          .append(",\"taxaTall\":").append(format(getTaxaTall()))
+          .append(",\"taxaTallPrimer\":").append(format(getTaxaTallPrimer()))
+          .append(",\"consultesTT\":").append(consultesTT)
+          .append(",\"encertsTT\":").append(encertsTT)
+          .append(",\"colisionsTT\":").append(colisionsTT)
+          .append(",\"ebf\":").append(format(getEbf()));
+        if (ponderacio != null) {
+            sb.append(",\"ponderacio\":\"").append(ponderacio).append('"');
+        }
+        for (int t = 0; t < NOMS_TEMPS.length; t++) {
+            sb.append(",\"temps_").append(NOMS_TEMPS[t]).append("Ms\":").append(format(getTempsEstimatNs(t) / 1e6));
+        }
+        sb.append(",\"iteracions\":[");
+        for (int i = 0; i < iteracions.size(); i++) {
+            Iteracio it = iteracions.get(i);
+            sb.append(i > 0 ? "," : "")
+              .append("{\"profunditat\":").append(it.profunditat)
+              .append(",\"nodes\":").append(it.nodes)
+              .append(",\"tempsMs\":").append(format(it.tempsNs / 1e6))
+              .append(",\"ebf\":").append(format(it.ebf))
+              .append(",\"moviment\":").append(it.moviment)
+              .append(",\"valor\":").append(format(it.valor))
+              .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Cabecera de {@link #csv}.
+     *
+     * @return nombres de las columnas
+     */
+    public static String capcaleraCsv() {
+        StringBuilder sb = new StringBuilder("jugador,jugada,tipus,origen,profunditat,nodes,nodesQuiescencia,tempsMs,"
+                + "nodesPerSegon,taxaTall,taxaTallPrimer,consultesTT,encertsTT,colisionsTT,ebf");
+        for (String nom : NOMS_TEMPS) {
+            sb.append(",temps_").append(nom).append("Ms");
+        }
+        return sb.append(",moviment,valor,ponderacio").toString();
+    }
+
+    /**
+     * Filas CSV: una por iteración y una de la jugada.
+     *
+     * @param jugador nombre del jugador
+     * @param jugada número de jugada del jugador
+     * @return filas separadas por saltos de línea
+     */
+    public String csv(String jugador, long jugada) {
+        String nom = jugador.replace(",", ";");
+        StringBuilder sb = new StringBuilder(256);
+        for (Iteracio it : iteracions) {
+            sb.append(nom).append(',').append(jugada).append(",iteracio,").append(origen)
+              .append(',').append(it.profunditat).append(',').append(it.nodes).append(",,")
+              .append(format(it.tempsNs / 1e6)).append(",,,,,,,").append(format(it.ebf));
+            for (int t = 0; t < NOMS_TEMPS.length; t++) {
+                sb.append(',');
+            }
+            sb.append(',').append(it.moviment).append(',').append(format(it.valor)).append(",\n");
+        }
+        sb.append(nom).append(',').append(jugada).append(",jugada,").append(origen)
+          .append(',').append(profunditat).append(',').append(nodes).append(',').append(nodesQuiescencia)
+          .append(',').append(format(tempsNs / 1e6)).append(',').append(format(getNodesPerSegon()))
+          .append(',').append(format(getTaxaTall())).append(',').append(format(getTaxaTallPrimer()))
+          .append(',').append(consultesTT).append(',').append(encertsTT).append(',').append(colisionsTT)
+          .append(',').append(format(getEbf()));
+        for (int t = 0; t < NOMS_TEMPS.length; t++) {
+            sb.append(',').append(format(getTempsEstimatNs(t) / 1e6));
+        }
+        return sb.append(",,,").append(ponderacio != null ? ponderacio : "").append('\n').toString();
+    }
+
+    private static String format(double x) {
+        return String.format(Locale.ROOT, "%.3f", x);
+    }
+}
@@ -0,0 +1,234 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+/**
+ * Gestión del tiempo de una jugada.
+ *
+ * <p>Ni {@code HeadlessGame} ni {@code Board} dicen al jugador de cuánto
+ * tiempo dispone: solo llaman a {@code timeout()} cuando se acaba. El gestor
+ * empieza con un presupuesto supuesto y, si llega un {@code timeout()} antes
+ * de acabarlo, aprende el real (lo medido desde el inicio de la jugada).
+ * También se puede fijar con {@link #setPressupost}.</p>
+ *
+ * <p>Hay dos límites:</p>
+ * <ul>
+ *   <li>el duro, el presupuesto menos {@link #MARGE_MS} para completar el
+ *       turno y devolverlo: la búsqueda lo consulta cada
+ *       {@link #NODES_CONSULTA} nodos con {@link System#nanoTime()} y se
+ *       para al pasarlo, sin esperar al {@code timeout()};</li>
+ *   <li>el de empezar otra iteración: se predice su coste multiplicando el
+ *       de la última por el factor de ramificación efectivo (nodos de una
+ *       iteración entre los de la anterior). Si acabaría antes del límite
+ *       duro se empieza. Si no, se empieza igualmente cuando el mejor
+ *       movimiento acaba de cambiar (se alarga la jugada hasta el límite
+ *       duro), y con el mejor movimiento estable solo mientras quede
+ *       {@link #FRACCIO_PARCIAL} del tiempo: el tiempo no se acumula entre
+ *       jugadas, e incluso interrumpida la iteración aprovecha lo buscado.</li>
+ * </ul>
+ *
+ * <p>Si solo hay un movimiento o el resultado ya está decidido no se
+ * busca más.</p>
+ *
+ * <p>El límite duro se lee desde los hilos ayudantes; el resto solo lo usa
+ * el hilo principal.</p>
+ *
+ * @author jieke
+ */
+public class GestorTemps {
+
+    /** Nodos entre consultas del reloj (menos uno; es una máscara). */
+    public static final int NODES_CONSULTA = (1 << 10) - 1;
+    /** Tiempo que se reserva para completar el turno y devolverlo. */
+    private static final long MARGE_MS = 150;
+    /** Fracción del tiempo que ha de quedar para empezar, con el mejor movimiento estable, una iteración que no acabará. */
+    private static final double FRACCIO_PARCIAL = 0.25;
+    /** Factor de ramificación que se supone hasta tener dos iteraciones. */
+    private static final double EBF_INICIAL = 6;
+    /** Presupuesto mínimo, por si llega un timeout() casi inmediato. */
+    private static final long PRESSUPOST_MINIM_MS = 200;
+    /** Tiempo máximo de una ponderación (por si la partida acaba y nadie cierra el jugador). */
+    private static final long MAX_PONDERACIO_MS = 60_000;
+
+    private long pressupostNs;
+    private volatile long inici;
+    private volatile long limitDur;
+
+    private long iniciIteracio;
+    private long tempsIteracio;
+    private long nodesAcumulats;
+    private long nodesAnteriors;
+    private double ebf;
+    private boolean inestable;
+    private boolean decidit;
+    private volatile boolean ponderant;
+
+    /**
+     * Crea un gestor que supone un presupuesto por jugada.
+     *
+     * @param pressupostMs presupuesto supuesto en milisegundos
+     */
+    public GestorTemps(long pressupostMs) {
+        setPressupost(pressupostMs);
+    }
+
+    /**
+     * Fija el presupuesto por jugada.
+     *
+     * @param pressupostMs presupuesto en milisegundos
+     */
+    public final void setPressupost(long pressupostMs) {
+        pressupostNs = Math.max(PRESSUPOST_MINIM_MS, pressupostMs) * 1_000_000L;
+    }
+
+    /**
+     * Presupuesto por jugada actual, supuesto o aprendido.
+     *
+     * @return presupuesto en milisegundos
+     */
+    public long getPressupostMs() {
+        return pressupostNs / 1_000_000L;
+    }
+
+    /**
+     * Empieza la cuenta de una jugada.
+     */
+    public void iniciaJugada() {
+        reinicia();
+        ponderant = false;
+    }
+
+    /**
+     * Empieza la cuenta de una ponderación: sin más límite que
+     * {@link #MAX_PONDERACIO_MS}, y un {@code timeout()} que llegue mientras
+     * no enseña nada del presupuesto.
+     */
+    public void iniciaPonderacio() {
+        // Antes de mover el inicio: un timeout() de la jugada que se acaba
+        // de devolver mediría casi 0 ms y enseñaría un presupuesto nulo
+        ponderant = true;
+        reinicia();
+        limitDur = inici + MAX_PONDERACIO_MS * 1_000_000L;
+    }
+
+    private void reinicia() {
+        inici = System.nanoTime();
+        limitDur = inici + pressupostNs - MARGE_MS * 1_000_000L;
+        iniciIteracio = inici;
+        tempsIteracio = 0;
+        nodesAcumulats = 0;
+        nodesAnteriors = 0;
+        ebf = EBF_INICIAL;
+        inestable = false;
+        decidit = false;
+    }
+
+    /**
+     * Registra que ha llegado el {@code timeout()}: lo medido desde el inicio
+     * de la jugada es el presupuesto real.
+     */
+    public void registraTimeout() {
+        // El inicio se lee antes que la marca: si ya es el de una
+        // ponderación, la marca también se ve puesta
+        long desde = inici;
+        if (ponderant) {
+            return;
+        }
+        long mesurat = System.nanoTime() - desde;
+        if (mesurat < pressupostNs) {
+            pressupostNs = Math.max(PRESSUPOST_MINIM_MS * 1_000_000L, mesurat);
+        }
+    }
+
+    /**
+     * Indica si se ha pasado el límite duro. Se llama cada
+     * {@link #NODES_CONSULTA} nodos.
+     *
+     * @return cierto si hay que parar ya
+     */
+    public boolean esgotat() {
+        return System.nanoTime() - limitDur > 0;
+    }
+
+    /**
+     * Marca la jugada como forzada o decidida: no vale la pena empezar más
+     * iteraciones.
+     */
+    public void decideix() {
+        decidit = true;
+    }
+
+    /**
+     * Registra una iteración completa.
+     *
+     * @param nodes nodos acumulados de la jugada al acabarla
+     * @param millorCanviat si el mejor movimiento es distinto del de la
+     *                      iteración anterior
+     */
+    public void iteracioAcabada(long nodes, boolean millorCanviat) {
+        long ara = System.nanoTime();
+        tempsIteracio = ara - iniciIteracio;
+        iniciIteracio = ara;
+        long nodesIteracio = nodes - nodesAcumulats;
+        nodesAcumulats = nodes;
+        if (nodesAnteriors > 0 && nodesIteracio > 0) {
+            // Media con la estimación anterior para suavizar el ruido de la PVS
+            double mesurat = (double) nodesIteracio / nodesAnteriors;
+            ebf = Math.max(1, (ebf + mesurat) / 2);
+        }
+        nodesAnteriors = Math.max(1, nodesIteracio);
+        inestable = millorCanviat;
+    }
+
+    /**
+     * Indica si vale la pena empezar la siguiente iteración.
+     *
+     * @return cierto si hay que seguir
+     */
+    public boolean potComencarIteracio() {
+        if (decidit) {
+            return false;
+        }
+        long ara = System.nanoTime();
+        iniciIteracio = ara;
+        long restant = limitDur - ara;
+        if (restant <= 0) {
+            return false;
+        }
+        long previst = (long) (tempsIteracio * ebf);
+        if (previst <= restant) {
+            return true;
+        }
+        // No acabará: aun así la iteración interrumpida aprovecha el tiempo
+        // (la raíz conserva el mejor movimiento ya demostrado), salvo al
+        // final de una jugada estable
+        return inestable || restant >= FRACCIO_PARCIAL * (limitDur - inici);
+    }
+
+    /**
+     * Instante ({@link System#nanoTime()}) del límite duro de la jugada.
+     *
+     * @return límite duro
+     */
+    public long getLimitDur() {
+        return limitDur;
+    }
+
+    /**
+     * Instante en el que ha pasado una fracción del tiempo de la jugada,
+     * para dar solo una parte a una búsqueda previa.
+     *
+     * @param fraccio fracción del tiempo hasta el límite duro
+     * @return instante ({@link System#nanoTime()})
+     */
+    public long limitFraccio(double fraccio) {
+        return inici + (long) (fraccio * (limitDur - inici));
+    }
+
+    /**
+     * Factor de ramificación efectivo estimado.
+     *
+     * @return nodos de una iteración respecto a la anterior
+     */
+    public double getEbf() {
+        return ebf;
+    }
+}
@@ -0,0 +1,183 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import edu.upc.epsevg.prop.oust.PlayerType;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Libro de aperturas: tirada a jugar en las posiciones de principio de
+ * partida, calculada antes con {@link ConstructorLlibre}.
+ *
+ * <p>El fichero es una cabecera seguida de entradas de tamaño fijo
+ * ordenadas por clave Zobrist canónica
+ * ({@link GameStatusTunned#getHashCanonic()}, que incluye el turno): las
+ * posiciones simétricas comparten entrada y la casilla se guarda en la
+ * orientación canónica.</p>
+ * <pre>
+ *   cabecera: int MAGIC, int VERSIO, int mida, int entrades
+ *   entrada:  long clau, short casella, short profunditat
+ * </pre>
+ *
+ * <p>Una entrada es una tirada, no un turno: si la tirada captura, la
+ * posición siguiente tiene su propia entrada, y así hasta la tirada que
+ * cierra el turno.</p>
+ *
+ * <p>El fichero se proyecta en memoria de solo lectura
+ * ({@link MappedByteBuffer}) y se consulta con una búsqueda binaria sobre
+ * la proyección: no se copia en el heap y lo comparten todos los jugadores
+ * del proceso. Las lecturas son absolutas, así que la consulta es segura
+ * desde varios hilos.</p>
+ *
+ * @author jieke
+ */
+public class LlibreObertures {
+
+    /** "OUST" en ASCII. */
+    static final int MAGIC = 0x4F555354;
+    static final int VERSIO = 2;
+    static final int MIDA_CAPCALERA = 16;
+    static final int MIDA_ENTRADA = 12;
+    /** Fichero del libro por defecto (se puede cambiar con -Doust.llibre=...). */
+    public static final String FITXER_PER_DEFECTE = "llibre7.bin";
+
+    private static LlibreObertures perDefecte;
+    private static boolean perDefecteCarregat;
+
+    private final MappedByteBuffer dades;
+    private final int mida;
+    private final int entrades;
+
+    private LlibreObertures(MappedByteBuffer dades) throws IOException {
+        this.dades = dades;
+        if (dades.capacity() < MIDA_CAPCALERA || dades.getInt(0) != MAGIC || dades.getInt(4) != VERSIO) {
+            throw new IOException("No es un libro de aperturas");
+        }
+        this.mida = dades.getInt(8);
+        this.entrades = dades.getInt(12);
+        if (dades.capacity() != MIDA_CAPCALERA + (long) entrades * MIDA_ENTRADA) {
+            throw new IOException("Libro de aperturas truncado");
+        }
+    }
+
+    /**
+     * Proyecta un fichero de libro en memoria.
+     *
+     * @param fitxer fichero escrito por {@link ConstructorLlibre}
+     * @return el libro
+     * @throws IOException si no se puede leer o no es un libro
+     */
+    public static LlibreObertures obre(Path fitxer) throws IOException {
+        try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ)) {
+            // La proyección sigue siendo válida al cerrar el canal
+            MappedByteBuffer dades = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            dades.order(ByteOrder.BIG_ENDIAN);
+            return new LlibreObertures(dades);
+        }
+    }
+
+    /**
+     * Libro por defecto del proceso: el de la propiedad {@code oust.llibre}
+     * o {@link #FITXER_PER_DEFECTE} en el directorio de trabajo. Se abre
+     * una sola vez.
+     *
+     * @return el libro, o {@code null} si no hay fichero o no se puede leer
+     */
+    public static synchronized LlibreObertures perDefecte() {
+        if (!perDefecteCarregat) {
+            perDefecteCarregat = true;
+            Path fitxer = Paths.get(System.getProperty("oust.llibre", FITXER_PER_DEFECTE));
+            if (Files.isRegularFile(fitxer)) {
+                try {
+                    perDefecte = obre(fitxer);
+                } catch (IOException ex) {
+                    System.err.println("Libro de aperturas " + fitxer + ": " + ex.getMessage());
+                }
+            }
+        }
+        return perDefecte;
+    }
+
+    /**
+     * Tamaño del tablero del libro.
+     *
+     * @return tamaño (lado del hexágono)
+     */
+    public int getMida() {
+        return mida;
+    }
+
+    /**
+     * Número de posiciones del libro.
+     *
+     * @return entradas
+     */
+    public int getEntrades() {
+        return entrades;
+    }
+
+    /**
+     * Busca la tirada de una posición.
+     *
+     * @param clau clave Zobrist canónica de la posición
+     * @return casilla a jugar en la orientación canónica, o -1 si la posición no está en el libro
+     */
+    public int consulta(long clau) {
+        int baix = 0;
+        int alt = entrades - 1;
+        while (baix <= alt) {
+            int mig = (baix + alt) >>> 1;
+            int pos = MIDA_CAPCALERA + mig * MIDA_ENTRADA;
+            long c = dades.getLong(pos);
+            if (c < clau) {
+                baix = mig + 1;
+            } else if (c > clau) {
+                alt = mig - 1;
+            } else {
+                return dades.getShort(pos + 8);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Turno completo del libro para la posición: se siguen las entradas
+     * mientras el jugador con el turno siga tirando.
+     *
+     * @param gs posición (no se modifica)
+     * @return tiradas del turno, o {@code null} si el libro no cubre el
+     *         turno entero
+     */
+    public List<Point> torn(GameStatus gs) {
+        if (gs.getSize() != mida || gs.isGameOver()) {
+            return null;
+        }
+        GameStatusTunned estat = new GameStatusTunned(gs);
+        estat.activaSimetries();
+        PlayerType jugador = estat.getCurrentPlayer();
+        List<Point> tirades = new ArrayList<>();
+        do {
+            int casella = consulta(estat.getHashCanonic());
+            if (casella < 0 || casella >= estat.getCellCount()) {
+                return null;
+            }
+            casella = estat.getSimetries().desfa(estat.getSimetriaCanonica(), casella);
+            if (!estat.isLegal(casella)) {
+                return null;
+            }
+            tirades.add(estat.toPoint(casella));
+            estat.placeStone(casella);
+        } while (!estat.isGameOver() && estat.getCurrentPlayer() == jugador);
+        return tirades;
+    }
+}
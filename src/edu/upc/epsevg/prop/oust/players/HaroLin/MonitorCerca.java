@@ -0,0 +1,204 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * MBean con las estadísticas de búsqueda de un jugador. Guarda la copia de
+ * la última jugada y los totales; el jugador lo actualiza al acabar cada
+ * jugada, nunca durante la búsqueda.
+ *
+ * <p>Se registra en el servidor de la plataforma como
+ * {@code edu.upc.epsevg.prop.oust:type=Cerca,name=<jugador>}, uno solo por
+ * nombre: los jugadores con el mismo nombre (las partidas de un torneo
+ * crean uno nuevo cada vez) comparten el monitor y suman sus totales, así
+ * que el número de MBeans no crece con las partidas. Si el registro falla
+ * el jugador sigue funcionando igual.</p>
+ *
+ * @author jieke
+ */
+public class MonitorCerca implements MonitorCercaMBean {
+
+    private static final ConcurrentMap<String, MonitorCerca> REGISTRATS = new ConcurrentHashMap<>();
+
+    private final String jugador;
+    private volatile EstadistiquesCerca darrera = new EstadistiquesCerca();
+    private long jugades;
+    private long jugadesCercades;
+    private long profunditatsCercades;
+    private long nodesTotals;
+    private long tempsTotalNs;
+
+    /**
+     * Crea el monitor de un jugador.
+     *
+     * @param jugador nombre del jugador
+     */
+    public MonitorCerca(String jugador) {
+        this.jugador = jugador;
+    }
+
+    /**
+     * Devuelve el monitor registrado con el nombre del jugador, y lo crea y
+     * registra la primera vez.
+     *
+     * @param jugador nombre del jugador
+     * @return el monitor (registrado o no)
+     */
+    public static MonitorCerca registra(String jugador) {
+        return REGISTRATS.computeIfAbsent(jugador, MonitorCerca::crea);
+    }
+
+    private static MonitorCerca crea(String jugador) {
+        MonitorCerca monitor = new MonitorCerca(jugador);
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nom = new ObjectName("edu.upc.epsevg.prop.oust:type=Cerca,name="
+                    + ObjectName.quote(jugador));
+            servidor.registerMBean(monitor, nom);
+        } catch (JMException | SecurityException ex) {
+            System.err.println("JMX " + jugador + ": " + ex.getMessage());
+        }
+        return monitor;
+    }
+
+    /**
+     * Publica las estadísticas de una jugada acabada.
+     *
+     * @param e estadísticas (el monitor se queda la referencia: no se han
+     *          de modificar después)
+     */
+    public synchronized void publica(EstadistiquesCerca e) {
+        darrera = e;
+        jugades++;
+        if ("cerca".equals(e.getOrigen())) {
+            jugadesCercades++;
+            profunditatsCercades += e.getProfunditat();
+        }
+        nodesTotals += e.getNodes();
+        tempsTotalNs += e.getTempsNs();
+    }
+
+    /**
+     * Estadísticas de la última jugada publicada.
+     *
+     * @return estadísticas
+     */
+    public EstadistiquesCerca darrera() {
+        return darrera;
+    }
+
+    @Override
+    public String getJugador() {
+        return jugador;
+    }
+
+    @Override
+    public synchronized long getJugades() {
+        return jugades;
+    }
+
+    @Override
+    public String getOrigen() {
+        return darrera.getOrigen();
+    }
+
+    @Override
+    public int getProfunditat() {
+        return darrera.getProfunditat();
+    }
+
+    @Override
+    public long getNodes() {
+        return darrera.getNodes();
+    }
+
+    @Override
+    public long getNodesQuiescencia() {
+        return darrera.getNodesQuiescencia();
+    }
+
+    @Override
+    public double getTempsMs() {
+        return darrera.getTempsNs() / 1e6;
+    }
+
+    @Override
+    public double getNodesPerSegon() {
+        return darrera.getNodesPerSegon();
+    }
+
+    @Override
+    public double getTaxaTall() {
+        return darrera.getTaxaTall();
+    }
+
+    @Override
+    public double getTaxaTallPrimer() {
+        return darrera.getTaxaTallPrimer();
+    }
+
+    @Override
+    public long getConsultesTT() {
+        return darrera.getConsultesTT();
+    }
+
+    @Override
+    public long getEncertsTT() {
+        return darrera.getEncertsTT();
+    }
+
+    @Override
+    public long getColisionsTT() {
+        return darrera.getColisionsTT();
+    }
+
+    @Override
+    public double getEbf() {
+        return darrera.getEbf();
+    }
+
+    @Override
+    public double getTempsGeneracioMs() {
+        return darrera.getTempsEstimatNs(EstadistiquesCerca.GENERACIO) / 1e6;
+    }
+
+    @Override
+    public double getTempsCopiaMs() {
+        return darrera.getTempsEstimatNs(EstadistiquesCerca.COPIA) / 1e6;
+    }
+
+    @Override
+    public double getTempsAvaluacioMs() {
+        return darrera.getTempsEstimatNs(EstadistiquesCerca.AVALUACIO) / 1e6;
+    }
+
+    @Override
+    public synchronized long getNodesTotals() {
+        return nodesTotals;
+    }
+
+    @Override
+    public synchronized double getTempsTotalMs() {
+        return tempsTotalNs / 1e6;
+    }
+
+    @Override
+    public synchronized double getNodesPerSegonMitja() {
+        return tempsTotalNs > 0 ? nodesTotals * 1e9 / tempsTotalNs : 0;
+    }
+
+    @Override
+    public synchronized double getProfunditatMitjana() {
+        return jugadesCercades > 0 ? (double) profunditatsCercades / jugadesCercades : 0;
+    }
+
+    @Override
+    public String getResum() {
+        return darrera.resum();
+    }
+}
@@ -0,0 +1,57 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+/**
+ * Interfaz JMX de {@link MonitorCerca}: estadísticas de la última jugada y
+ * acumuladas de un jugador, visibles con jconsole o VisualVM.
+ *
+ * @author jieke
+ */
+public interface MonitorCercaMBean {
+
+    String getJugador();
+
+    long getJugades();
+
+    String getOrigen();
+
+    int getProfunditat();
+
+    long getNodes();
+
+    long getNodesQuiescencia();
+
+    double getTempsMs();
+
+    double getNodesPerSegon();
+
+    double getTaxaTall();
+
+    double getTaxaTallPrimer();
+
+    long getConsultesTT();
+
+    long getEncertsTT();
+
+    long getColisionsTT();
+
+    double getEbf();
+
+    double getTempsGeneracioMs();
+
+    double getTempsCopiaMs();
+
+    double getTempsAvaluacioMs();
+
+    long getNodesTotals();
+
+    double getTempsTotalMs();
+
+    /** @return nodos por segundo de todas las jugadas */
+    double getNodesPerSegonMitja();
+
+    /** @return profundidad media de las jugadas buscadas */
+    double getProfunditatMitjana();
+
+    /** @return resumen de la última jugada */
+    String getResum();
+}
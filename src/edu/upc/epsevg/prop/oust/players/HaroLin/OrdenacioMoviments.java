@@ -0,0 +1,207 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.MyStatus;
+import java.util.Arrays;
+
+/**
+ * Ordenación de movimientos para la poda Alpha-Beta sin copiar el estado ni
+ * crear objetos.
+ *
+ * <p>Cada movimiento recibe una puntuación entera y el buffer de casillas se
+ * ordena en el sitio, de mayor a menor; en los nodos internos se ordena de
+ * forma incremental con {@link #seguent} a medida que se recorren. El orden
+ * es:</p>
+ * <ol>
+ *   <li>el movimiento de la tabla de transposiciones;</li>
+ *   <li>las capturas, por número de piedras enemigas vecinas a la casilla
+ *       (estimación estática de lo que se captura);</li>
+ *   <li>los dos movimientos asesinos (killer) del nivel;</li>
+ *   <li>el resto, por la tabla de historia del jugador con el turno.</li>
+ * </ol>
+ *
+ * <p>Los asesinos y la historia se alimentan con {@link #tall} cada vez que
+ * un movimiento sin captura provoca una poda. Cada hilo de búsqueda usa su
+ * propia instancia.</p>
+ *
+ * @author jieke
+ */
+public class OrdenacioMoviments {
+
+    private static final int PUNTS_TAULA = 1 << 30;
+    private static final int PUNTS_CAPTURA = 1 << 24;
+    private static final int PUNTS_KILLER_1 = 1 << 21;
+    private static final int PUNTS_KILLER_2 = 1 << 20;
+    /** Límite de la historia; al superarlo se divide toda la tabla por dos. */
+    private static final int MAX_HISTORIA = 1 << 19;
+
+    private final int caselles;
+    private final int[][] killers;
+    private final int[][] historia;
+    private final int[][] puntuacions;
+
+    /**
+     * Crea las tablas para un tablero y una profundidad máxima.
+     *
+     * @param caselles número de casillas del tablero
+     * @param maxNivells número de niveles (ply) que puede tener la búsqueda
+     */
+    public OrdenacioMoviments(int caselles, int maxNivells) {
+        this.caselles = caselles;
+        this.killers = new int[maxNivells][2];
+        this.historia = new int[2][caselles];
+        this.puntuacions = new int[maxNivells][caselles];
+        for (int[] k : killers) {
+            Arrays.fill(k, -1);
+        }
+    }
+
+    /**
+     * Número de casillas del tablero para el que se crearon las tablas.
+     *
+     * @return casillas
+     */
+    public int getCaselles() {
+        return caselles;
+    }
+
+    /**
+     * Prepara una nueva búsqueda: olvida los asesinos y reduce la historia a
+     * la mitad, para que pese más lo que se aprenda en esta posición.
+     */
+    public void novaCerca() {
+        for (int[] k : killers) {
+            k[0] = k[1] = -1;
+        }
+        redueixHistoria();
+    }
+
+    /**
+     * Puntúa los movimientos de un nodo. Después se recorren con
+     * {@link #seguent}, que los va ordenando en el sitio.
+     *
+     * @param gs estado del nodo (no se modifica)
+     * @param moviments casillas de los movimientos
+     * @param numMoviments número de movimientos
+     * @param nivell distancia a la raíz
+     * @param movimentTaula movimiento de la tabla de transposiciones, o -1
+     */
+    public void puntua(MyStatus gs, int[] moviments, int numMoviments, int nivell, int movimentTaula) {
+        int[] punts = puntuacions[nivell];
+        int propi = gs.getTurn();
+        int[] hist = historia[propi];
+        int[] killer = killers[nivell];
+        for (int i = 0; i < numMoviments; i++) {
+            int m = moviments[i];
+            int p;
+            if (m == movimentTaula) {
+                p = PUNTS_TAULA;
+            } else if (gs.isCapture(m)) {
+                p = PUNTS_CAPTURA + (enemicsVeins(gs, m, propi) << 8) + hist[m];
+            } else if (m == killer[0]) {
+                p = PUNTS_KILLER_1;
+            } else if (m == killer[1]) {
+                p = PUNTS_KILLER_2;
+            } else {
+                p = hist[m];
+            }
+            punts[i] = p;
+        }
+    }
+
+    /**
+     * Lleva a la posición {@code i} el movimiento con más puntuación de los
+     * que quedan (selección incremental): si hay poda pronto no se paga la
+     * ordenación del resto.
+     *
+     * @param moviments casillas puntuadas con {@link #puntua}
+     * @param i posición a ocupar; las anteriores ya están ordenadas
+     * @param numMoviments número de movimientos
+     * @param nivell distancia a la raíz (el mismo de {@link #puntua})
+     * @return el movimiento que queda en la posición {@code i}
+     */
+    public int seguent(int[] moviments, int i, int numMoviments, int nivell) {
+        int[] punts = puntuacions[nivell];
+        int millor = i;
+        for (int j = i + 1; j < numMoviments; j++) {
+            if (punts[j] > punts[millor]) {
+                millor = j;
+            }
+        }
+        if (millor != i) {
+            int p = punts[i];
+            punts[i] = punts[millor];
+            punts[millor] = p;
+            int m = moviments[i];
+            moviments[i] = moviments[millor];
+            moviments[millor] = m;
+        }
+        return moviments[i];
+    }
+
+    /**
+     * Ordena del todo en el sitio los movimientos de un nodo.
+     *
+     * @param gs estado del nodo (no se modifica)
+     * @param moviments casillas de los movimientos
+     * @param numMoviments número de movimientos
+     * @param nivell distancia a la raíz
+     * @param movimentTaula movimiento de la tabla de transposiciones, o -1
+     */
+    public void ordena(MyStatus gs, int[] moviments, int numMoviments, int nivell, int movimentTaula) {
+        puntua(gs, moviments, numMoviments, nivell, movimentTaula);
+        for (int i = 0; i < numMoviments - 1; i++) {
+            seguent(moviments, i, numMoviments, nivell);
+        }
+    }
+
+    /**
+     * Registra que un movimiento ha provocado una poda.
+     *
+     * @param torn jugador que ha hecho el movimiento (0 o 1)
+     * @param moviment casilla del movimiento
+     * @param captura si el movimiento capturaba
+     * @param nivell distancia a la raíz
+     * @param profunditat profundidad restante del nodo
+     */
+    public void tall(int torn, int moviment, boolean captura, int nivell, int profunditat) {
+        int[] hist = historia[torn];
+        hist[moviment] += profunditat * profunditat;
+        if (hist[moviment] > MAX_HISTORIA) {
+            redueixHistoria();
+        }
+        if (!captura) {
+            int[] killer = killers[nivell];
+            if (killer[0] != moviment) {
+                killer[1] = killer[0];
+                killer[0] = moviment;
+            }
+        }
+    }
+
+    private void redueixHistoria() {
+        for (int[] h : historia) {
+            for (int c = 0; c < h.length; c++) {
+                h[c] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Piedras enemigas vecinas a una casilla.
+     *
+     * @param gs estado (no se modifica)
+     * @param cell casilla
+     * @param propi jugador que tira (0 o 1)
+     * @return número de vecinas del rival
+     */
+    static int enemicsVeins(MyStatus gs, int cell, int propi) {
+        int n = 0;
+        for (int v : gs.getNeighbours(cell)) {
+            int o = gs.owner(v);
+            if (o >= 0 && o != propi) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,772 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import edu.upc.epsevg.prop.oust.IAuto;
+import edu.upc.epsevg.prop.oust.IPlayer;
+import edu.upc.epsevg.prop.oust.MyStatus;
+import edu.upc.epsevg.prop.oust.PlayerMove;
+import edu.upc.epsevg.prop.oust.SearchType;
+import java.awt.Point;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jugador automático basado en Monte Carlo Tree Search (UCT).
+ *
+ * <p>Cada iteración baja por el árbol eligiendo el hijo con mejor cota UCB1,
+ * expande la hoja con todos sus movimientos legales, juega una partida
+ * aleatoria hasta el final y propaga el resultado hacia la raíz. En Oust un
+ * mismo jugador puede colocar varias piedras seguidas (capturas), así que
+ * cada nodo guarda qué jugador hizo el movimiento que lleva a él y las
+ * victorias se cuentan desde su punto de vista.</p>
+ *
+ * <p>Los nodos no son objetos: viven en un {@link Arena} de arrays
+ * primitivos y se referencian por índice; los hijos de un nodo ocupan un
+ * bloque contiguo. Las partidas aleatorias se juegan sobre un único
+ * {@link MyStatus} con un buffer de movimientos fijo y un generador
+ * xorshift propio, de modo que una iteración no crea ningún objeto.</p>
+ *
+ * <p>Con más de un hilo el árbol es compartido (paralelismo de árbol): las
+ * visitas y victorias se actualizan con operaciones atómicas
+ * ({@link VarHandle}) y cada hilo suma la visita al bajar, antes de conocer
+ * el resultado (pérdida virtual), para que los demás hilos prefieran otras
+ * ramas. La expansión tampoco bloquea: un nodo se reserva con un CAS y el
+ * bloque de hijos se obtiene con un incremento atómico del primer nodo
+ * libre.</p>
+ *
+ * <p>Entre turnos se reaprovecha el subárbol de la posición a la que se ha
+ * llegado: se busca por clave Zobrist bajo la raíz anterior y se compacta en
+ * la otra arena, descartando el resto.</p>
+ *
+ * <p>El {@link PlayerMove} devuelto indica las partidas simuladas como nodos
+ * explorados, la profundidad máxima del árbol y, en {@code H}, el valor de
+ * la jugada para quien mueve: la proporción de victorias (de 0 a 1, un
+ * empate cuenta medio) del primer movimiento elegido. Las partidas
+ * simuladas por segundo se consultan con {@link #getPartidesPerSegon()}.</p>
+ *
+ * <p>Al acabar la partida, {@link #close()} para la ponderación y libera
+ * los hilos.</p>
+ *
+ * Implementa las interfaces {@link IPlayer} y {@link IAuto}.
+ *
+ * @author jieke
+ */
+public class PlayerMCTS implements IPlayer, IAuto, AutoCloseable {
+
+    /** Presupuesto por jugada que se supone hasta aprender el real. */
+    private static final long PRESSUPOST_INICIAL_MS = 4500;
+    private static final int NODES_PER_DEFECTE = 1 << 20;
+    private static final double C_UCT = 1.41;
+    /** Niveles bajo la raíz anterior donde se busca la nueva posición. */
+    private static final int PROFUNDITAT_REUS = 12;
+    /** Casillas al azar que se prueban en la simulación antes de generar la lista. */
+    private static final int INTENTS_ALEATORIS = 16;
+    /** Segundos que un hilo auxiliar espera trabajo antes de acabar. */
+    private static final long ESPERA_FILS_S = 30;
+
+    // Estados de primerFill además del índice del primer hijo
+    private static final int NO_EXPANDIT = -1;
+    private static final int EXPANDINT = -2;
+    /** Sin movimientos legales sin que la partida se acabe: hoja para siempre. */
+    private static final int SENSE_MOVIMENTS = -3;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final String name;
+    private final GestorTemps temps;
+    private volatile boolean timeoutOccurred;
+
+    private Arena arena;
+    private Arena reserva;
+    private int[] cua;
+
+    private final Cercador[] cercadors;
+    private final Ponderacio ponderacio = new Ponderacio("MCTS-ponder");
+    private boolean ponderar;
+    private boolean traca;
+    private long partidesPonderacio;
+    private LlibreObertures llibre = LlibreObertures.perDefecte();
+    private ExecutorService fils;
+    private int maxDepthReached;
+    private double partidesPerSegon;
+
+    /**
+     * Crea un jugador MCTS con el tiempo y la memoria por defecto.
+     */
+    public PlayerMCTS() {
+        this(PRESSUPOST_INICIAL_MS, NODES_PER_DEFECTE);
+    }
+
+    /**
+     * Crea un jugador MCTS de un solo hilo.
+     *
+     * @param tempsMaximMs tiempo por jugada que se supone; si antes llega
+     *                     {@link #timeout()} se aprende el real
+     * @param maxNodes nodos que caben en el árbol
+     */
+    public PlayerMCTS(long tempsMaximMs, int maxNodes) {
+        this(tempsMaximMs, maxNodes, 1);
+    }
+
+    /**
+     * Crea un jugador MCTS que busca con varios hilos sobre un mismo árbol.
+     *
+     * @param tempsMaximMs tiempo por jugada que se supone; si antes llega
+     *                     {@link #timeout()} se aprende el real
+     * @param maxNodes nodos que caben en el árbol
+     * @param numFils número total de hilos de búsqueda
+     */
+    public PlayerMCTS(long tempsMaximMs, int maxNodes, int numFils) {
+        this.name = numFils > 1 ? "MCTS-" + numFils + "T" : "MCTS";
+        this.temps = new GestorTemps(tempsMaximMs);
+        this.arena = new Arena(maxNodes);
+        this.reserva = new Arena(maxNodes);
+        this.cercadors = new Cercador[Math.max(1, numFils)];
+        for (int i = 0; i < cercadors.length; i++) {
+            cercadors[i] = new Cercador(0x9E3779B97F4A7C15L * (i + 1));
+        }
+    }
+
+    /**
+     * Fija el libro de aperturas que se consulta antes de buscar (por
+     * defecto {@link LlibreObertures#perDefecte()}).
+     *
+     * @param llibre libro, o {@code null} para buscar siempre
+     */
+    public void setLlibre(LlibreObertures llibre) {
+        this.llibre = llibre;
+    }
+
+    /**
+     * Activa la ponderación: al acabar cada jugada el árbol sigue creciendo,
+     * en un hilo aparte, desde la posición en la que le toca al rival. Si la
+     * respuesta del rival está en el árbol, el siguiente {@link #move} lo
+     * reaprovecha como siempre; si no, se descarta. El siguiente
+     * {@link #move} para la ponderación al instante.
+     *
+     * @param ponderar cierto para ponderar durante el turno del rival
+     */
+    public void setPonderacio(boolean ponderar) {
+        this.ponderar = ponderar;
+    }
+
+    /**
+     * Activa o desactiva el resumen de cada jugada y de cada ponderación
+     * por consola (inactivo por defecto).
+     *
+     * @param traca cierto para escribir el resumen
+     */
+    public void setTraca(boolean traca) {
+        this.traca = traca;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Velocidad de la última jugada.
+     *
+     * @return partidas simuladas por segundo entre todos los hilos (0 si
+     *         la jugada salió del libro)
+     */
+    public double getPartidesPerSegon() {
+        return partidesPerSegon;
+    }
+
+    @Override
+    public void timeout() {
+        temps.registraTimeout();
+        timeoutOccurred = true;
+    }
+
+    /**
+     * Para la ponderación y libera su hilo y los auxiliares al acabar la
+     * partida. El jugador se puede seguir usando: la siguiente jugada los
+     * vuelve a crear.
+     */
+    @Override
+    public void close() {
+        ponderacio.tanca(() -> timeoutOccurred = true);
+        if (fils != null) {
+            fils.shutdown();
+            fils = null;
+        }
+    }
+
+    /**
+     * Busca con MCTS hasta recibir {@link #timeout()} o agotar el tiempo
+     * máximo y devuelve la secuencia de colocaciones más visitada.
+     *
+     * @param gs estado actual del juego
+     * @return movimiento elegido junto con información de la búsqueda
+     */
+    @Override
+    public PlayerMove move(GameStatus gs) {
+        boolean ponderava = ponderacio.atura(() -> timeoutOccurred = true);
+        List<Point> deLlibre = llibre != null ? llibre.torn(gs) : null;
+        if (deLlibre != null) {
+            if (traca) {
+                System.out.println("MCTS - Libro de aperturas");
+            }
+            partidesPerSegon = 0;
+            return new PlayerMove(deLlibre, 0, 0, SearchType.MONTECARLO);
+        }
+        long inici = System.nanoTime();
+        temps.iniciaJugada();
+        long limit = temps.getLimitDur();
+        timeoutOccurred = false;
+
+        boolean reaprofitat = preparaArrel(gs);
+        if (ponderava && traca) {
+            System.out.println("MCTS - Ponderación: " + (reaprofitat ? "acierto" : "fallo")
+                    + ", Partidas: " + partidesPonderacio);
+        }
+
+        List<Future<?>> tasques = llancaFils(limit);
+        cercadors[0].cerca(limit);
+        timeoutOccurred = true;
+        long partides = esperaFils(tasques);
+
+        double segons = Math.max(1e-9, (System.nanoTime() - inici) / 1e9);
+        double perSegon = partides / segons;
+        partidesPerSegon = perSegon;
+        int nodes = Math.min(arena.lliure, arena.capacitat);
+        if (traca) {
+            System.out.println("MCTS - Partidas: " + partides + " (" + (long) perSegon
+                    + "/s), Profundidad: " + maxDepthReached + ", Nodos: " + nodes);
+        }
+
+        float valor = valorArrel();
+        List<Point> sequencia = triaSequencia();
+        PlayerMove pm = new PlayerMove(sequencia, partides, maxDepthReached, SearchType.MONTECARLO);
+        pm.setH(valor);
+
+        if (ponderar) {
+            GameStatus seguent = new GameStatus(gs);
+            for (Point p : sequencia) {
+                seguent.placeStone(p);
+            }
+            if (!seguent.isGameOver()) {
+                timeoutOccurred = false;
+                ponderacio.llanca(() -> pondera(seguent));
+            }
+        }
+        return pm;
+    }
+
+    /**
+     * Ponderación: hace crecer el árbol desde la posición en la que le toca
+     * al rival hasta que llega el siguiente {@link #move}.
+     */
+    private void pondera(GameStatus gs) {
+        preparaArrel(gs);
+        temps.iniciaPonderacio();
+        cercadors[0].cerca(temps.getLimitDur());
+        partidesPonderacio = cercadors[0].partides;
+    }
+
+    /**
+     * Pone en marcha los hilos auxiliares, cada uno con su copia del estado
+     * de la raíz.
+     */
+    private List<Future<?>> llancaFils(long limit) {
+        List<Future<?>> tasques = new ArrayList<>();
+        if (cercadors.length == 1) {
+            return tasques;
+        }
+        if (fils == null) {
+            // Si nadie llama a close(), los hilos acaban solos al dejar de jugar
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(cercadors.length - 1, cercadors.length - 1,
+                    ESPERA_FILS_S, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "MCTS-fil");
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            fils = pool;
+        }
+        for (int i = 1; i < cercadors.length; i++) {
+            Cercador c = cercadors[i];
+            c.estat.copyFrom(cercadors[0].estat);
+            tasques.add(fils.submit(() -> c.cerca(limit)));
+        }
+        return tasques;
+    }
+
+    /**
+     * Espera a que acaben los hilos auxiliares.
+     *
+     * @return partidas simuladas entre todos los hilos
+     */
+    private long esperaFils(List<Future<?>> tasques) {
+        for (Future<?> tasca : tasques) {
+            try {
+                tasca.get();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+        long partides = 0;
+        maxDepthReached = 0;
+        for (Cercador c : cercadors) {
+            partides += c.partides;
+            maxDepthReached = Math.max(maxDepthReached, c.profunditat);
+        }
+        return partides;
+    }
+
+    /**
+     * Deja la raíz del árbol en la posición {@code gs}: reaprovecha el
+     * subárbol si la posición ya estaba en el árbol del turno anterior y, si
+     * no, empieza un árbol nuevo.
+     *
+     * @return cierto si se ha reaprovechado un subárbol
+     */
+    private boolean preparaArrel(GameStatus gs) {
+        GameStatusTunned estat = new GameStatusTunned(gs);
+        Cercador principal = cercadors[0];
+        boolean mateixaMida = principal.estat != null && principal.estat.getSize() == estat.getSize();
+        principal.estat = estat;
+        if (!mateixaMida) {
+            for (int i = 0; i < cercadors.length; i++) {
+                cercadors[i].prepara(i == 0 ? estat : new GameStatusTunned(estat));
+            }
+            cua = new int[arena.capacitat];
+            arena.lliure = 0;
+        }
+
+        int trobat = arena.lliure > 0 ? cercaPosicio(estat.getHash()) : -1;
+        if (trobat >= 0) {
+            compacta(trobat);
+        } else {
+            arena.lliure = 0;
+            arena.nou(-1, 1 - estat.getTurn());
+        }
+        arena.clau[0] = estat.getHash();
+        return trobat >= 0;
+    }
+
+    /**
+     * Busca en los primeros niveles del árbol un nodo ya visitado con la
+     * clave indicada.
+     *
+     * @return índice del nodo o -1
+     */
+    private int cercaPosicio(long clau) {
+        Arena a = arena;
+        int cap = 0, cuaFi = 0;
+        cua[cuaFi++] = 0;
+        for (int nivell = 0; nivell <= PROFUNDITAT_REUS && cap < cuaFi; nivell++) {
+            int fiNivell = cuaFi;
+            while (cap < fiNivell) {
+                int node = cua[cap++];
+                if (a.clau[node] == clau && a.visites[node] > 0) {
+                    return node;
+                }
+                int primer = a.primerFill[node];
+                if (primer < 0) {
+                    continue;
+                }
+                for (int i = 0; i < a.numFills[node]; i++) {
+                    if (a.visites[primer + i] > 0) {
+                        cua[cuaFi++] = primer + i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copia el subárbol que cuelga de {@code arrel} a la arena de reserva
+     * (recorrido en anchura, así los hijos siguen contiguos y el nodo
+     * {@code i}-ésimo que sale de la cola queda en la posición {@code i}) y
+     * la intercambia con la actual.
+     */
+    private void compacta(int arrel) {
+        Arena origen = arena, desti = reserva;
+        desti.lliure = 0;
+        desti.copiaNode(origen, arrel, desti.lliure++);
+        desti.primerFill[0] = NO_EXPANDIT;
+        int cap = 0, cuaFi = 0;
+        cua[cuaFi++] = arrel;
+        while (cap < cuaFi) {
+            int vell = cua[cap];
+            int nouIndex = cap++;
+            int primer = origen.primerFill[vell];
+            int fills = origen.numFills[vell];
+            if (primer < 0) {
+                continue;
+            }
+            desti.primerFill[nouIndex] = desti.lliure;
+            for (int i = 0; i < fills; i++) {
+                int f = desti.lliure++;
+                desti.copiaNode(origen, primer + i, f);
+                desti.primerFill[f] = NO_EXPANDIT;
+                cua[cuaFi++] = primer + i;
+            }
+        }
+        arena = desti;
+        reserva = origen;
+    }
+
+    /**
+     * Proporción de victorias, para quien mueve, del hijo más visitado de
+     * la raíz (el primer movimiento que se juega).
+     *
+     * @return valor de 0 a 1, o 0.5 si la raíz no tiene hijos visitados
+     */
+    private float valorArrel() {
+        Arena a = arena;
+        int primer = a.primerFill[0];
+        if (primer < 0) {
+            return 0.5f;
+        }
+        int millor = -1;
+        for (int f = primer; f < primer + a.numFills[0]; f++) {
+            if (a.visites[f] > 0 && (millor < 0 || a.visites[f] > a.visites[millor])) {
+                millor = f;
+            }
+        }
+        return millor < 0 ? 0.5f : (float) (a.guanys[millor] * 0.5 / a.visites[millor]);
+    }
+
+    /**
+     * Baja desde la raíz por el hijo más visitado mientras le toque al
+     * jugador actual. Si el árbol se acaba antes de ceder el turno, se
+     * completa la secuencia con movimientos aleatorios.
+     *
+     * @return secuencia de colocaciones, la última sin captura
+     */
+    private List<Point> triaSequencia() {
+        List<Point> sequencia = new ArrayList<>();
+        Arena a = arena;
+        Cercador c = cercadors[0];
+        GameStatusTunned s = c.estat;
+        int jo = s.getTurn();
+        int node = 0;
+        int colocades = 0;
+        while (!s.isGameOver() && s.getTurn() == jo) {
+            int mov = -1;
+            if (node >= 0 && a.primerFill[node] >= 0) {
+                int primer = a.primerFill[node];
+                int fi = primer + a.numFills[node];
+                int millorVisites = 0;
+                for (int f = primer; f < fi; f++) {
+                    if (a.visites[f] > millorVisites) {
+                        millorVisites = a.visites[f];
+                        node = f;
+                    }
+                }
+                mov = millorVisites > 0 ? a.moviment[node] : -1;
+            }
+            if (mov < 0) {
+                node = -1;
+                int k = s.getMoves(c.moviments);
+                if (k == 0) {
+                    break;
+                }
+                mov = c.moviments[c.aleatori(k)];
+            }
+            s.placeStone(mov);
+            colocades++;
+            sequencia.add(s.toPoint(mov));
+        }
+        for (int i = 0; i < colocades; i++) {
+            s.undo();
+        }
+        return sequencia;
+    }
+
+    /**
+     * Estado propio de cada hilo de búsqueda: su copia del tablero, el de
+     * simulación, los buffers y el generador aleatorio.
+     */
+    private final class Cercador {
+        GameStatusTunned estat;
+        MyStatus simulacio;
+        int[] moviments;
+        int[] cami;
+        long llavor;
+        long partides;
+        int profunditat;
+
+        Cercador(long llavor) {
+            this.llavor = llavor;
+        }
+
+        void prepara(GameStatusTunned estat) {
+            this.estat = estat;
+            simulacio = new MyStatus(estat.getSize());
+            moviments = new int[estat.getCellCount()];
+            cami = new int[estat.getCellCount() * 4 + 2];
+        }
+
+        /**
+         * Itera hasta el límite de tiempo o hasta recibir el aviso de parar.
+         */
+        void cerca(long limit) {
+            partides = 0;
+            profunditat = 0;
+            while (!timeoutOccurred && !estat.isGameOver() && System.nanoTime() < limit) {
+                iteracio();
+                partides++;
+            }
+        }
+
+        /**
+         * Una iteración de MCTS: selección, expansión, simulación y
+         * retropropagación. El estado vuelve a la raíz al acabar.
+         */
+        void iteracio() {
+            Arena a = arena;
+            GameStatusTunned s = estat;
+            int node = 0;
+            int prof = 0;
+            cami[0] = 0;
+            int previ = (int) INTS.getAndAdd(a.visites, 0, 1);
+
+            // Selección: la visita se cuenta al bajar (pérdida virtual)
+            int primer;
+            while ((primer = (int) INTS.getAcquire(a.primerFill, node)) >= 0) {
+                node = selecciona(a, node, primer);
+                previ = (int) INTS.getAndAdd(a.visites, node, 1);
+                s.placeStone(a.moviment[node]);
+                cami[++prof] = node;
+                if (previ == 0) {
+                    a.clau[node] = s.getHash();
+                    break;
+                }
+            }
+
+            // Expansión
+            if (!s.isGameOver() && (previ > 0 || node == 0) && expandeix(a, node)) {
+                node = a.primerFill[node];
+                INTS.getAndAdd(a.visites, node, 1);
+                s.placeStone(a.moviment[node]);
+                a.clau[node] = s.getHash();
+                cami[++prof] = node;
+            }
+            if (prof > profunditat) {
+                profunditat = prof;
+            }
+
+            // Simulación
+            int guanyador = s.isGameOver() ? s.GetWinner().to_01() : simula(s);
+
+            // Retropropagación (las visitas ya están contadas)
+            for (int i = 0; i <= prof; i++) {
+                int n = cami[i];
+                if (guanyador < 0) {
+                    INTS.getAndAdd(a.guanys, n, 1);
+                } else if (a.jugador[n] == guanyador) {
+                    INTS.getAndAdd(a.guanys, n, 2);
+                }
+            }
+            for (int i = 0; i < prof; i++) {
+                s.undo();
+            }
+        }
+
+        /**
+         * Hijo con mayor UCB1; los no visitados van primero (en el orden
+         * barajado de la expansión).
+         */
+        int selecciona(Arena a, int node, int primer) {
+            int fi = primer + a.numFills[node];
+            double logN = Math.log(Math.max(1, a.visites[node]));
+            int millor = primer;
+            double millorValor = Double.NEGATIVE_INFINITY;
+            for (int f = primer; f < fi; f++) {
+                int v = a.visites[f];
+                if (v == 0) {
+                    return f;
+                }
+                double valor = a.guanys[f] * 0.5 / v + C_UCT * Math.sqrt(logN / v);
+                if (valor > millorValor) {
+                    millorValor = valor;
+                    millor = f;
+                }
+            }
+            return millor;
+        }
+
+        /**
+         * Crea los hijos de un nodo en un bloque contiguo, en orden
+         * aleatorio. Solo lo hace el hilo que gana el CAS sobre
+         * {@code primerFill}; los demás tratan el nodo como una hoja. Un
+         * nodo en el que no hay movimientos (la partida no se ha acabado)
+         * queda marcado como hoja: se puntúa con la simulación.
+         *
+         * @return cierto si este hilo ha expandido el nodo
+         */
+        boolean expandeix(Arena a, int node) {
+            if (a.lliure >= a.capacitat
+                    || !INTS.compareAndSet(a.primerFill, node, NO_EXPANDIT, EXPANDINT)) {
+                return false;
+            }
+            int k = estat.getMoves(moviments);
+            if (k == 0) {
+                INTS.setRelease(a.primerFill, node, SENSE_MOVIMENTS);
+                return false;
+            }
+            int base = a.reserva(k);
+            if (base + k > a.capacitat) {
+                INTS.setRelease(a.primerFill, node, NO_EXPANDIT);
+                return false;
+            }
+            for (int i = k - 1; i > 0; i--) {
+                int j = aleatori(i + 1);
+                int t = moviments[i];
+                moviments[i] = moviments[j];
+                moviments[j] = t;
+            }
+            int torn = estat.getTurn();
+            for (int i = 0; i < k; i++) {
+                a.inicialitza(base + i, moviments[i], torn);
+            }
+            a.numFills[node] = k;
+            INTS.setRelease(a.primerFill, node, base);
+            return true;
+        }
+
+        /**
+         * Juega una partida aleatoria desde el estado {@code s} sobre la
+         * copia de simulación, sin modificar {@code s} ni crear objetos.
+         *
+         * @return jugador ganador (0 o 1), o -1 si se corta sin acabar y hay empate
+         */
+        int simula(MyStatus s) {
+            MyStatus sim = simulacio;
+            sim.copyFrom(s);
+            int caselles = sim.getCellCount();
+            int limit = 4 * caselles;
+            for (int passos = 0; !sim.isGameOver() && passos < limit; passos++) {
+                // Muestreo por rechazo: una casilla al azar que sea legal es
+                // uniforme entre las legales y evita generar toda la lista
+                int mov = -1;
+                for (int intent = 0; intent < INTENTS_ALEATORIS; intent++) {
+                    int c = aleatori(caselles);
+                    if (sim.isLegal(c)) {
+                        mov = c;
+                        break;
+                    }
+                }
+                if (mov < 0) {
+                    int k = sim.getMoves(moviments);
+                    if (k == 0) {
+                        break;
+                    }
+                    mov = moviments[aleatori(k)];
+                }
+                sim.placeStone(mov);
+            }
+            if (sim.isGameOver()) {
+                return sim.GetWinner().to_01();
+            }
+            int diferencia = sim.diff();
+            return diferencia > 0 ? 0 : diferencia < 0 ? 1 : -1;
+        }
+
+        /**
+         * Número aleatorio en {@code [0, n)} con xorshift64*.
+         */
+        int aleatori(int n) {
+            long x = llavor;
+            x ^= x >>> 12;
+            x ^= x << 25;
+            x ^= x >>> 27;
+            llavor = x;
+            return (int) ((((x * 0x2545F4914F6CDD1DL) >>> 32) * n) >>> 32);
+        }
+    }
+
+    /**
+     * Nodos del árbol como estructura de arrays. El nodo 0 es la raíz.
+     * Las visitas, las victorias y {@code primerFill} se modifican de forma
+     * atómica durante la búsqueda; el resto de campos de un nodo solo los
+     * escribe el hilo que lo crea, antes de publicarlo.
+     */
+    private static final class Arena {
+        private static final VarHandle LLIURE;
+
+        static {
+            try {
+                LLIURE = MethodHandles.lookup().findVarHandle(Arena.class, "lliure", int.class);
+            } catch (ReflectiveOperationException ex) {
+                throw new ExceptionInInitializerError(ex);
+            }
+        }
+
+        final int capacitat;
+        /** Índice del primer hijo, {@code NO_EXPANDIT}, {@code EXPANDINT} o {@code SENSE_MOVIMENTS}. */
+        final int[] primerFill;
+        final int[] numFills;
+        /** Casilla del movimiento que lleva al nodo. */
+        final short[] moviment;
+        /** Jugador (0 o 1) que ha hecho ese movimiento. */
+        final byte[] jugador;
+        /** Visitas, incluidas las de las simulaciones aún en curso. */
+        final int[] visites;
+        /** Victorias del jugador del nodo en medios puntos (empate = 1). */
+        final int[] guanys;
+        /** Clave Zobrist de la posición, o 0 si aún no se ha visitado. */
+        final long[] clau;
+        volatile int lliure;
+
+        Arena(int capacitat) {
+            this.capacitat = capacitat;
+            primerFill = new int[capacitat];
+            numFills = new int[capacitat];
+            moviment = new short[capacitat];
+            jugador = new byte[capacitat];
+            visites = new int[capacitat];
+            guanys = new int[capacitat];
+            clau = new long[capacitat];
+        }
+
+        /**
+         * Reserva {@code k} nodos consecutivos. Si no caben, el índice
+         * devuelto más {@code k} supera la capacidad.
+         */
+        int reserva(int k) {
+            return (int) LLIURE.getAndAdd(this, k);
+        }
+
+        int nou(int mov, int torn) {
+            int i = lliure++;
+            inicialitza(i, mov, torn);
+            return i;
+        }
+
+        void inicialitza(int i, int mov, int torn) {
+            primerFill[i] = NO_EXPANDIT;
+            numFills[i] = 0;
+            moviment[i] = (short) mov;
+            jugador[i] = (byte) torn;
+            visites[i] = 0;
+            guanys[i] = 0;
+            clau[i] = 0;
+        }
+
+        void copiaNode(Arena o, int de, int a) {
+            primerFill[a] = o.primerFill[de];
+            numFills[a] = o.numFills[de];
+            moviment[a] = o.moviment[de];
+            jugador[a] = o.jugador[de];
+            visites[a] = o.visites[de];
+            guanys[a] = o.guanys[de];
+            clau[a] = o.clau[de];
+        }
+    }
+}
@@ -4,6 +4,7 @@
  */
 package edu.upc.epsevg.prop.oust.players.HaroLin;
 import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
 import edu.upc.epsevg.prop.oust.IPlayer;
 import edu.upc.epsevg.prop.oust.IAuto;
 import edu.upc.epsevg.prop.oust.PlayerMove;
@@ -12,8 +13,6 @@ import edu.upc.epsevg.prop.oust.SearchType;
 import java.awt.Point;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  *
@@ -24,6 +23,22 @@ public class PlayerMiniMax implements IPlayer, IAuto {
     private int maxDepth;
     private PlayerType myColor;
     private long nodesExplorats;
+    private long nodesQuiescencia;
+    private int[][] movimentsPerNivell;
+    private OrdenacioMoviments ordenacio;
+    private final CercaCaptures captures = new CercaCaptures(new CercaCaptures.Ganxos() {
+        @Override
+        public double evaluar(GameStatusTunned gs) {
+            return PlayerMiniMax.this.evaluar(gs);
+        }
+
+        @Override
+        public boolean nodeQuiescencia() {
+            nodesQuiescencia++;
+            return true;
+        }
+    });
+    private LlibreObertures llibre = LlibreObertures.perDefecte();
     
     /**
      * Constructor que inicializa un jugador Minimax con la profundidad especificada.
@@ -36,6 +51,16 @@ public class PlayerMiniMax implements IPlayer, IAuto {
         this.maxDepth = maxDepth;
     } 
     
+    /**
+     * Fija el libro de aperturas que se consulta antes de buscar (por
+     * defecto {@link LlibreObertures#perDefecte()}).
+     *
+     * @param llibre libro, o {@code null} para buscar siempre
+     */
+    public void setLlibre(LlibreObertures llibre) {
+        this.llibre = llibre;
+    }
+    
     /**
      * Obtiene el nombre del jugador.
      * 
@@ -61,31 +86,47 @@ public class PlayerMiniMax implements IPlayer, IAuto {
      */
     @Override
     public PlayerMove move(GameStatus gs) {
+        List<Point> deLlibre = llibre != null ? llibre.torn(gs) : null;
+        if (deLlibre != null) {
+            System.out.println("Minimax - Libro de aperturas");
+            return new PlayerMove(deLlibre, 0, 0, SearchType.MINIMAX);
+        }
         myColor = gs.getCurrentPlayer();
         nodesExplorats = 0;
+        nodesQuiescencia = 0;
+        
+        GameStatusTunned estat = new GameStatusTunned(gs);
+        movimentsPerNivell = new int[maxDepth + 1][estat.getCellCount()];
+        captures.prepara(myColor, estat.getCellCount());
+        if (ordenacio == null || ordenacio.getCaselles() != estat.getCellCount()) {
+            ordenacio = new OrdenacioMoviments(estat.getCellCount(), maxDepth + 1);
+        }
+        ordenacio.novaCerca();
         
         // Obtener movimientos posibles
-        List<Point> moviments = gs.getMoves();
+        int[] moviments = movimentsPerNivell[maxDepth];
+        int numMoviments = estat.getMoves(moviments);
         
-        if (moviments == null || moviments.isEmpty()) {
+        if (numMoviments == 0) {
             return new PlayerMove(new ArrayList<>(), 0, 0, SearchType.MINIMAX);
         }
         
         // Ordenar movimientos para mejorar la poda alpha-beta
-        List<Point> movimentsOrdenats = ordenarMoviments(gs, moviments);
+        ordenacio.ordena(estat, moviments, numMoviments, 0, -1);
         
-        Point millorMoviment = null;
+        int millorMoviment = -1;
         double millorValor = Double.NEGATIVE_INFINITY;
         double alpha = Double.NEGATIVE_INFINITY;
         double beta = Double.POSITIVE_INFINITY;
         
-        for (Point moviment : movimentsOrdenats) {
-            GameStatus seguentEstat = new GameStatus(gs);
-            seguentEstat.placeStone(moviment);
+        for (int i = 0; i < numMoviments; i++) {
+            int moviment = moviments[i];
+            estat.placeStone(moviment);
             
             // CORREGIDO: Verificar quién juega después del movimiento
-            boolean nextIsMax = (seguentEstat.getCurrentPlayer() == myColor);
-            double value = minimax(seguentEstat, maxDepth - 1, alpha, beta, nextIsMax);
+            boolean nextIsMax = (estat.getCurrentPlayer() == myColor);
+            double value = minimax(estat, maxDepth - 1, alpha, beta, nextIsMax);
+            estat.undo();
             
             if (value > millorValor) {
                 millorValor = value;
@@ -95,148 +136,13 @@ public class PlayerMiniMax implements IPlayer, IAuto {
             alpha = Math.max(alpha, value);
         }
         
-        System.out.println("Minimax - Profundidad: " + maxDepth + ", Nodos: " + nodesExplorats);
-        
-        List<Point> moveSequence = generarSequenciaMoviments(gs, millorMoviment);
-        
-        return new PlayerMove(moveSequence, nodesExplorats, maxDepth, SearchType.MINIMAX);
-    }
-    
-    /**
-    * Ordena los movimientos disponibles según una evaluación heurística
-    * rápida para mejorar la eficiencia de la poda Alpha-Beta.
-    *
-    * @param gs estado actual del juego
-    * @param moviments lista de movimientos disponibles
-    * @return lista de movimientos ordenados de mejor a peor
-    */
-    private List<Point> ordenarMoviments(GameStatus gs, List<Point> moviments) {
-        // Usar un Map para asociar cada movimiento con su valor
-        Map<Point, Double> valores = new HashMap<>();
-        
-        for (Point mov : moviments) {
-            GameStatus temp = new GameStatus(gs);
-            temp.placeStone(mov);
-            double valor = evaluacioRapida(temp);
-            valores.put(mov, valor);
-        }
-        
-        // Ordenar los movimientos por su valor descendente
-        List<Point> ordenados = new ArrayList<>(moviments);
-        ordenados.sort((a, b) -> Double.compare(valores.get(b), valores.get(a)));
-        
-        return ordenados;
-    }
-    
-    /**
-    * Realiza una evaluación heurística rápida de un estado del juego.
-    * Se utiliza únicamente para ordenar movimientos.
-    *
-    * @param gs estado del juego a evaluar
-    * @return valor heurístico aproximado del estado
-    */
-    private double evaluacioRapida(GameStatus gs) {
-        if (gs.isGameOver()) {
-            if (gs.GetWinner() == myColor) return 100000;
-            if (gs.GetWinner() == null) return 0;
-            return -100000;
-        }
-        
-        int misPiezas = 0;
-        int oponentePiezas = 0;
-        int size = gs.getSize();
-        
-        PlayerType oponent = (myColor == PlayerType.PLAYER1) ? 
-                              PlayerType.PLAYER2 : PlayerType.PLAYER1;
-        
-        for (int row = 0; row < (2*size)-1; row++) {
-            for (int col = 0; col < (2*size)-1; col++) {
-                PlayerType color = gs.getColor(row, col);
-                if (color == myColor) {
-                    misPiezas++;
-                } else if (color == oponent) {
-                    oponentePiezas++;
-                }
-            }
-        }
-        
-        return (misPiezas - oponentePiezas) * 10;
-    }
-    
-    /**
-    * Genera la secuencia completa de movimientos incluyendo capturas
-    * consecutivas a partir de un primer movimiento.
-    *
-    * @param gs estado actual del juego
-    * @param primerMoviment primer movimiento de la secuencia
-    * @return lista de movimientos que forman la secuencia
-    */
-    private List<Point> generarSequenciaMoviments(GameStatus gs, Point primerMoviment) {
-        List<Point> sequencia = new ArrayList<>();
-        
-        if (primerMoviment == null) {
-            return sequencia;
-        }
-        
-        GameStatus estat = new GameStatus(gs);
-        Point movimentActual = primerMoviment;
-        PlayerType jugadorInicial = gs.getCurrentPlayer();
-        int maxIterations = 50;
-        int iterations = 0;
+        long nodesTotals = nodesExplorats + nodesQuiescencia;
+        System.out.println("Minimax - Profundidad: " + maxDepth + ", Nodos: " + nodesTotals
+                + " (quiescencia: " + nodesQuiescencia + ")");
         
-        while (movimentActual != null && iterations < maxIterations) {
-            sequencia.add(movimentActual);
-            
-            estat.placeStone(movimentActual);
-            
-            if (estat.getCurrentPlayer() == jugadorInicial && !estat.isGameOver()) {
-                List<Point> proximMoviments = estat.getMoves();
-                if (proximMoviments != null && !proximMoviments.isEmpty()) {
-                    movimentActual = seleccionarMillorCaptura(estat, proximMoviments);
-                } else {
-                    break;
-                }
-            } else {
-                break;
-            }
-            
-            iterations++;
-        }
+        List<Point> moveSequence = captures.completaTorn(estat, millorMoviment);
         
-        return sequencia;
-    }
-    
-    /**
-     * Selecciona la mejor captura de entre los movimientos disponibles.
-     * 
-     * @param gs el estado actual del juego
-     * @param moviments la lista de movimientos disponibles
-     * @return el punto correspondiente a la mejor captura
-     */
-    private Point seleccionarMillorCaptura(GameStatus gs, List<Point> moviments) {
-        if (moviments == null || moviments.isEmpty()) {
-            return null;
-        }
-        
-        Point millorMoviment = moviments.get(0);
-        double millorValor = Double.NEGATIVE_INFINITY;
-        
-        for (Point moviment : moviments) {
-            try {
-                GameStatus seguentEstat = new GameStatus(gs);
-                seguentEstat.placeStone(moviment);
-                double valor = evaluar(seguentEstat);
-                
-                if (valor > millorValor) {
-                    millorValor = valor;
-                    millorMoviment = moviment;
-                }
-            } catch (Exception e) {
-                continue;
-            }
-        }
-        
-        return millorMoviment;
+        return new PlayerMove(moveSequence, nodesTotals, maxDepth, SearchType.MINIMAX);
     }
     
     /**
@@ -249,35 +155,49 @@ public class PlayerMiniMax implements IPlayer, IAuto {
     * @param maximitzador indica si el nodo actual es maximizador
     * @return valor heurístico del estado evaluado
     */
-    private double minimax(GameStatus gs, int depth, double alpha, double beta, boolean maximitzador) { 
+    private double minimax(GameStatusTunned gs, int depth, double alpha, double beta, boolean maximitzador) { 
         nodesExplorats++;
         
-        if (depth == 0 || gs.isGameOver()) {
+        if (gs.isGameOver()) {
             return evaluar(gs);
         }
+        if (depth == 0) {
+            return captures.quiescencia(gs, alpha, beta, maximitzador, 0);
+        }
+        
+        int[] moviments = movimentsPerNivell[depth];
+        int numMoviments = gs.getMoves(moviments);
         
-        List<Point> moviments = gs.getMoves();
+        if (numMoviments == 0) {
+            // Ningún jugador puede mover: la posición queda bloqueada
+            return evaluar(gs);
+        }
         
-        if (moviments == null || moviments.isEmpty()) {
-            GameStatus proximEstat = new GameStatus(gs);
-            proximEstat.placeStone(null);
-            boolean nextIsMax = (proximEstat.getCurrentPlayer() == myColor);
-            return minimax(proximEstat, depth - 1, alpha, beta, nextIsMax);
+        // Capturas, asesinos e historia primero. Justo encima de las hojas
+        // ordenar cuesta más que los nodos que ahorra.
+        int nivell = maxDepth - depth;
+        boolean ordenar = depth > 1;
+        if (ordenar) {
+            ordenacio.puntua(gs, moviments, numMoviments, nivell, -1);
         }
         
         if (maximitzador) {
             double maxEval = Double.NEGATIVE_INFINITY;
-            for (Point moviment : moviments) {
-                GameStatus nextState = new GameStatus(gs);
-                nextState.placeStone(moviment);
+            for (int i = 0; i < numMoviments; i++) {
+                if (ordenar) {
+                    ordenacio.seguent(moviments, i, numMoviments, nivell);
+                }
+                gs.placeStone(moviments[i]);
                 
-                boolean proximEsMax = (nextState.getCurrentPlayer() == myColor);
+                boolean proximEsMax = (gs.getCurrentPlayer() == myColor);
                 
-                double eval = minimax(nextState, depth - 1, alpha, beta, proximEsMax);
+                double eval = minimax(gs, depth - 1, alpha, beta, proximEsMax);
+                gs.undo();
                 maxEval = Math.max(maxEval, eval);
                 alpha = Math.max(alpha, eval);
                 
                 if (beta <= alpha) {
+                    ordenacio.tall(gs.getTurn(), moviments[i], gs.isCapture(moviments[i]), nivell, depth);
                     break;
                 }
             }
@@ -285,17 +205,21 @@ public class PlayerMiniMax implements IPlayer, IAuto {
         } else {
             double minEval = Double.POSITIVE_INFINITY;
             
-            for (Point moviment : moviments) {
-                GameStatus nextState = new GameStatus(gs);
-                nextState.placeStone(moviment);
+            for (int i = 0; i < numMoviments; i++) {
+                if (ordenar) {
+                    ordenacio.seguent(moviments, i, numMoviments, nivell);
+                }
+                gs.placeStone(moviments[i]);
                 
-                boolean nextIsMax = (nextState.getCurrentPlayer() == myColor);
+                boolean nextIsMax = (gs.getCurrentPlayer() == myColor);
                 
-                double eval = minimax(nextState, depth - 1, alpha, beta, nextIsMax);
+                double eval = minimax(gs, depth - 1, alpha, beta, nextIsMax);
+                gs.undo();
                 minEval = Math.min(minEval, eval);
                 beta = Math.min(beta, eval);
                 
                 if (beta <= alpha) {
+                    ordenacio.tall(gs.getTurn(), moviments[i], gs.isCapture(moviments[i]), nivell, depth);
                     break;
                 }
             }
@@ -303,14 +227,21 @@ public class PlayerMiniMax implements IPlayer, IAuto {
         }
     }
     
-     /**
+    /**
     * Evalúa heurísticamente un estado del juego considerando piezas,
     * movilidad, control del centro y condiciones de victoria.
     *
+    * <p>Todos los términos los mantiene el estado de forma incremental, así
+    * que la evaluación es O(1). La movilidad se estima con las casillas
+    * libres del jugador con el turno (colocaciones que no capturan).</p>
+    *
+    * <p>Visible en el paquete para los benchmarks; el punto de vista es el
+    * del jugador de la última jugada.</p>
+    *
     * @param gs estado del juego a evaluar
     * @return valor heurístico del estado
     */
-    private double evaluar(GameStatus gs) {
+    double evaluar(GameStatusTunned gs) {
         if (gs.isGameOver()) {
             if (gs.GetWinner() == myColor) {
                 return 100000;
@@ -321,30 +252,13 @@ public class PlayerMiniMax implements IPlayer, IAuto {
             }
         }
         
-        int pecesMeves = 0;
-        int pecesOponent = 0;
-        int size = gs.getSize();
-        int controlCentre = 0;
-        int centre = size - 1;
-        
         PlayerType oponent = (myColor == PlayerType.PLAYER1) ? 
                               PlayerType.PLAYER2 : PlayerType.PLAYER1;
         
-        for (int row = 0; row < (2*size)-1; row++) {
-            for (int col = 0; col < (2*size)-1; col++) {
-                PlayerType color = gs.getColor(row, col);
-                if (color == myColor) {
-                    pecesMeves++;
-                    int distCentre = Math.abs(row - centre) + Math.abs(col - centre);
-                    controlCentre += (size - distCentre);
-                } else if (color == oponent) {
-                    pecesOponent++;
-                }
-            }
-        }
-        
-        List<Point> movimentsDisponibles = gs.getMoves();
-        int movilitat = (movimentsDisponibles != null) ? movimentsDisponibles.size() : 0;
+        int pecesMeves = gs.getStoneCount(myColor);
+        int pecesOponent = gs.getStoneCount(oponent);
+        int controlCentre = gs.getCentreControl(myColor);
+        int movilitat = gs.getFreeCells(gs.getCurrentPlayer());
         
         double score = 0;
         score += (pecesMeves - pecesOponent) * 100;
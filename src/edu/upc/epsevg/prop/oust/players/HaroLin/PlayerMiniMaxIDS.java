@@ -5,47 +5,319 @@
 package edu.upc.epsevg.prop.oust.players.HaroLin;
 
 import edu.upc.epsevg.prop.oust.GameStatus;
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
 import edu.upc.epsevg.prop.oust.IPlayer;
 import edu.upc.epsevg.prop.oust.IAuto;
 import edu.upc.epsevg.prop.oust.PlayerMove;
 import edu.upc.epsevg.prop.oust.PlayerType;
 import edu.upc.epsevg.prop.oust.SearchType;
+import edu.upc.epsevg.prop.oust.Simetries;
 import java.awt.Point;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementación de un jugador automático basado en el algoritmo Minimax
  * con profundización iterativa (IDS) y poda Alpha-Beta.
  *
  * <p>El jugador incrementa progresivamente la profundidad de búsqueda mientras
- * respeta un límite de tiempo (timeout), seleccionando el mejor movimiento
- * encontrado hasta el momento.</p>
+ * respeta un límite de tiempo, seleccionando el mejor movimiento encontrado
+ * hasta el momento. El {@link GestorTemps} aprende el tiempo real por jugada
+ * y decide si vale la pena empezar otra iteración, de modo que la búsqueda
+ * acaba antes de que llegue el timeout().</p>
  *
- * <p>Incluye optimizaciones como ordenación heurística de movimientos y una
- * función de evaluación para estimar la calidad de los estados del juego.</p>
+ * <p>Incluye optimizaciones como ordenación heurística de movimientos, una
+ * tabla de transposiciones indexada por clave Zobrist y una función de
+ * evaluación para estimar la calidad de los estados del juego.</p>
+ *
+ * <p>La tabla de transposiciones es del jugador y dura entre jugadas y
+ * entre partidas: la mitad del árbol de la jugada anterior sigue sirviendo
+ * en la siguiente. Cada búsqueda es una generación nueva y, al llenarse,
+ * se sustituyen antes las entradas más antiguas y menos profundas. Su
+ * memoria se fija con {@link #PlayerMiniMaxIDS(int)}.</p>
+ *
+ * <p>Con más de un hilo funciona en modo Lazy SMP: los hilos ayudantes
+ * buscan la misma raíz a profundidades escalonadas y comparten la tabla de
+ * transposiciones (sin bloqueos), de modo que el hilo principal encuentra
+ * gran parte del árbol ya resuelto. Se devuelve el resultado de la
+ * iteración completa más profunda de cualquiera de los hilos. Al acabar la
+ * partida, {@link #close()} para la ponderación y libera los hilos.</p>
+ *
+ * <p>Cada jugada deja sus estadísticas en un {@link EstadistiquesCerca}
+ * (nodos, podas, tabla, EBF y tiempos por iteración) que se publica al
+ * acabar: en un MBean ({@link MonitorCerca}), en el fichero de
+ * {@link RegistreEstadistiques} si lo hay y, con la traza activa, en una
+ * línea por consola. Durante la búsqueda solo se incrementan contadores.</p>
  *
  * Implementa las interfaces {@link IPlayer} y {@link IAuto}.
  *
  * @author jieke
  */
-public class PlayerMiniMaxIDS implements IPlayer, IAuto {
+public class PlayerMiniMaxIDS implements IPlayer, IAuto, AutoCloseable {
     
     private String name;
     private PlayerType myColor;
     private long nodesExplorats;
+    private long nodesQuiescencia;
     private int maxDepthReached;
-    private boolean timeoutOccurred;
-    private long startTime;
-    private static final long TIMEOUT_MS = 4500;   
+    private volatile boolean timeoutOccurred;
+    /** Presupuesto por jugada que se supone hasta aprender el real. */
+    private static final long PRESSUPOST_INICIAL_MS = 4500;
+    /** Evaluación de una partida acabada. */
+    private static final double VALOR_VICTORIA = 100000;
+    private static final int MAX_DEPTH = 50;
+    /** Segundos que un hilo ayudante espera trabajo antes de acabar. */
+    private static final long ESPERA_AJUDANTS_S = 30;
+    private static final int TT_MB_PER_DEFECTE = 64;
+    /** Se combina con las claves de la tabla cuando jugamos con PLAYER2. */
+    private static final long CLAU_PLAYER2 = 0x9E3779B97F4A7C15L;
+    /** Piedras del bando débil por debajo de las cuales se intenta resolver el final. */
+    private static final int PEDRES_FINALS = 4;
+    /** Fracción del tiempo de la jugada para el solucionador de finales. */
+    private static final double FRACCIO_FINALS = 0.15;
+    private static final int FINALS_MB = 16;
+    /** Primera profundidad que usa ventana de aspiración. */
+    private static final int PROFUNDITAT_ASPIRACIO = 3;
+    /** Semiancho inicial de la ventana (algo menos que una piedra). */
+    private static final double FINESTRA_ASPIRACIO = 60;
+    /** A partir de este semiancho la ventana se abre del todo. */
+    private static final double FINESTRA_MAXIMA = 4000;
+    private int[][] movimentsPerNivell;
+    private final TranspositionTable taula;
+    private int casellesTaula = -1;
+    private final GestorTemps temps;
+    private LlibreObertures llibre;
+    private SolucionadorFinals finals;
+    private int pedresFinals = PEDRES_FINALS;
+    
+    // Ponderación
+    private final Ponderacio ponderacio;
+    private boolean ponderar;
+    private long clauPonderacio;
+    private int profunditatPonderacio;
+    private int profunditatRespostes;
+    private long nodesPonderacio;
+    private int maxDepth = MAX_DEPTH;
+    private long maxNodes = Long.MAX_VALUE;
+    private OrdenacioMoviments ordenacio;
+    private final CercaCaptures captures = new CercaCaptures(new CercaCaptures.Ganxos() {
+        @Override
+        public double evaluar(GameStatusTunned gs) {
+            return PlayerMiniMaxIDS.this.evaluar(gs);
+        }
+
+        @Override
+        public boolean nodeQuiescencia() {
+            if ((++nodesQuiescencia & GestorTemps.NODES_CONSULTA) == 0 && esgotat()) {
+                timeoutOccurred = true;
+            }
+            return !timeoutOccurred;
+        }
+
+        @Override
+        public boolean aturat() {
+            return timeoutOccurred;
+        }
+
+        @Override
+        public int captures(GameStatusTunned gs, int[] moviments) {
+            long inici = estadistiques.inici(EstadistiquesCerca.GENERACIO);
+            int numMoviments = gs.getCaptureMoves(moviments);
+            estadistiques.fi(EstadistiquesCerca.GENERACIO, inici);
+            return numMoviments;
+        }
+
+        @Override
+        public int continuacio(GameStatusTunned gs) {
+            return movimentTaula(gs);
+        }
+    });
+    private int profunditatIteracio;
+    private double valorArrel;
+    private double valorCompletat;
+    private double valorAnterior;
+    private boolean teValorAnterior;
+    
+    // Lazy SMP
+    private final PlayerMiniMaxIDS principal;
+    private final PlayerMiniMaxIDS[] ajudants;
+    private final int indexAjudant;
+    private ExecutorService fils;
+    private int profunditatCompletada;
+    private int movimentCompletat;
+    private int profunditatParcial;
+    
+    // Estadísticas
+    private EstadistiquesCerca estadistiques = new EstadistiquesCerca();
+    private volatile EstadistiquesCerca darreres = new EstadistiquesCerca();
+    private MonitorCerca monitor;
+    private RegistreEstadistiques registre;
+    private boolean traca;
+    private long jugades;
 
     /**
     * Crea un jugador Minimax con profundización iterativa (IDS).
     */
     public PlayerMiniMaxIDS() {
-        this.name = "MiniMaxIDS";
+        this(TT_MB_PER_DEFECTE);
+    }
+
+    /**
+    * Crea un jugador Minimax con profundización iterativa (IDS) y una tabla
+    * de transposiciones del tamaño indicado.
+    *
+    * @param megabytesTT memoria de la tabla de transposiciones en MB
+    */
+    public PlayerMiniMaxIDS(int megabytesTT) {
+        this(megabytesTT, 1);
+    }
+
+    /**
+    * Crea un jugador Minimax IDS que busca con varios hilos (Lazy SMP).
+    *
+    * @param megabytesTT memoria de la tabla de transposiciones compartida en MB
+    * @param numFils número total de hilos de búsqueda (1 = sin ayudantes)
+    */
+    public PlayerMiniMaxIDS(int megabytesTT, int numFils) {
+        this.name = numFils > 1 ? "MiniMaxIDS-" + numFils + "T" : "MiniMaxIDS";
+        this.taula = new TranspositionTable(megabytesTT);
+        this.temps = new GestorTemps(PRESSUPOST_INICIAL_MS);
+        this.ponderacio = new Ponderacio("IDS-ponder");
+        this.llibre = LlibreObertures.perDefecte();
+        this.principal = null;
+        this.indexAjudant = -1;
+        this.ajudants = new PlayerMiniMaxIDS[Math.max(0, numFils - 1)];
+        for (int i = 0; i < ajudants.length; i++) {
+            ajudants[i] = new PlayerMiniMaxIDS(this, i);
+        }
+        this.monitor = MonitorCerca.registra(name);
+        this.registre = RegistreEstadistiques.perDefecte();
+    }
+
+    /**
+    * Crea un hilo ayudante que comparte la tabla del jugador principal.
+    */
+    private PlayerMiniMaxIDS(PlayerMiniMaxIDS principal, int index) {
+        this.name = principal.name;
+        this.taula = principal.taula;
+        this.temps = principal.temps;
+        this.ponderacio = null;
+        this.principal = principal;
+        this.indexAjudant = index;
+        this.ajudants = new PlayerMiniMaxIDS[0];
+    }
+
+    /**
+    * Limita la profundidad máxima de la búsqueda (por defecto no hay más
+    * límite que el tiempo).
+    *
+    * @param maxDepth profundidad máxima
+    */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.min(maxDepth, MAX_DEPTH - 1);
+    }
+
+    /**
+    * Limita los nodos de cada jugada, contados por hilo (por defecto no hay
+    * más límite que el tiempo). Al llegar al límite la búsqueda para como
+    * si se acabara el tiempo: sirve para analizar a nodos fijos. La
+    * profundidad 1 se completa siempre, aunque pase del límite, para que
+    * la jugada tenga un valor.
+    *
+    * @param maxNodes nodos por jugada
+    */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = Math.max(1, maxNodes);
+    }
+
+    /**
+    * Fija el tiempo por jugada, si se conoce. Si no, se supone
+    * {@link #PRESSUPOST_INICIAL_MS} y se aprende del primer
+    * {@link #timeout()}.
+    *
+    * @param milisegons tiempo por jugada en milisegundos
+    */
+    public void setTempsPerJugada(long milisegons) {
+        temps.setPressupost(milisegons);
+    }
+
+    /**
+    * Fija el libro de aperturas que se consulta antes de buscar (por
+    * defecto {@link LlibreObertures#perDefecte()}).
+    *
+    * @param llibre libro, o {@code null} para buscar siempre
+    */
+    public void setLlibre(LlibreObertures llibre) {
+        this.llibre = llibre;
+    }
+
+    /**
+    * Fija cuántas piedras ha de tener como mucho el bando débil para
+    * intentar resolver el final de forma exacta antes de buscar (ver
+    * {@link SolucionadorFinals#esFinal}).
+    *
+    * @param pedres piedras del bando débil (0 para no usar el solucionador)
+    */
+    public void setPedresFinals(int pedres) {
+        this.pedresFinals = pedres;
+    }
+
+    /**
+    * Activa la ponderación: al acabar cada jugada se sigue buscando, en un
+    * hilo aparte, la posición a la que se llega si el rival responde lo
+    * que prevé la tabla de transposiciones y después la posición del
+    * rival. Todo queda en la tabla, y la búsqueda siguiente reencuentra lo
+    * que le sirva. El siguiente {@link #move} para la ponderación al
+    * instante.
+    *
+    * @param ponderar cierto para ponderar durante el turno del rival
+    */
+    public void setPonderacio(boolean ponderar) {
+        this.ponderar = ponderar;
+    }
+
+    /**
+    * Activa o desactiva el resumen de cada jugada y de cada ponderación
+    * por consola. Inactivo por defecto: las estadísticas ya salen por el
+    * MBean de {@link MonitorCerca} y por el {@link RegistreEstadistiques}.
+    *
+    * @param traca cierto para escribir el resumen
+    */
+    public void setTraca(boolean traca) {
+        this.traca = traca;
+    }
+
+    /**
+    * Fija el fichero donde se añaden las estadísticas de cada jugada (por
+    * defecto {@link RegistreEstadistiques#perDefecte()}).
+    *
+    * @param registre registro, o {@code null} para no escribir ninguno
+    */
+    public void setRegistre(RegistreEstadistiques registre) {
+        this.registre = registre;
+    }
+
+    /**
+    * Estadísticas de la última jugada.
+    *
+    * @return estadísticas (no se modifican después de publicarse)
+    */
+    public EstadistiquesCerca getEstadistiques() {
+        return darreres;
+    }
+
+    /**
+    * MBean del jugador, compartido con los demás jugadores del mismo nombre.
+    *
+    * @return monitor con la última jugada y los totales del nombre
+    */
+    public MonitorCerca getMonitor() {
+        return monitor;
     }
 
     /**
@@ -67,221 +339,585 @@ public class PlayerMiniMaxIDS implements IPlayer, IAuto {
     */
     @Override
     public PlayerMove move(GameStatus gs) {
+        long inici = System.nanoTime();
+        EstadistiquesCerca est = new EstadistiquesCerca();
+        long copia = est.inici(EstadistiquesCerca.COPIA);
+        GameStatusTunned estat = new GameStatusTunned(gs);
+        activaSimetries(estat);
+        est.fi(EstadistiquesCerca.COPIA, copia);
         myColor = gs.getCurrentPlayer();
+        est.setPonderacio(aturaPonderacio(clau(estat)));
+        estadistiques = est;
+        
+        List<Point> deLlibre = llibre != null ? llibre.torn(gs) : null;
+        if (deLlibre != null) {
+            est.tanca("llibre", 0, 0, 0, System.nanoTime() - inici);
+            publica(est);
+            return new PlayerMove(deLlibre, 0, 0, SearchType.MINIMAX_IDS);
+        }
+        
         nodesExplorats = 0;
+        nodesQuiescencia = 0;
         maxDepthReached = 0;
         timeoutOccurred = false;
-        startTime = System.currentTimeMillis();
+        temps.iniciaJugada();
+        if (estat.getCellCount() != casellesTaula) {
+            // Las claves dependen de la numeración de las casillas
+            taula.buida();
+            casellesTaula = estat.getCellCount();
+        }
+        taula.novaCerca();
+        
+        movimentsPerNivell = new int[MAX_DEPTH + 1][estat.getCellCount()];
+        captures.prepara(myColor, estat.getCellCount());
+        preparaOrdenacio(estat.getCellCount());
         
-        List<Point> moves = gs.getMoves();
+        int[] moves = movimentsPerNivell[0];
+        int numMoves = estat.getMoves(moves);
         
-        if (moves == null || moves.isEmpty()) {
+        if (numMoves == 0) {
             return new PlayerMove(new ArrayList<>(), 0, 0, SearchType.MINIMAX_IDS);
         }
         
-        Point bestMove = moves.get(0);
-        Point currentBestMove = null;
+        long nodesFinals = 0;
+        if (pedresFinals > 0 && SolucionadorFinals.esFinal(estat, pedresFinals)) {
+            if (finals == null || finals.getCaselles() != estat.getCellCount()) {
+                finals = new SolucionadorFinals(estat.getCellCount(), FINALS_MB);
+            }
+            int resultat = finals.resol(estat, temps.limitFraccio(FRACCIO_FINALS));
+            nodesFinals = finals.getNodes();
+            List<Point> guanyador = resultat == SolucionadorFinals.GUANYA ? finals.tornGuanyador(estat) : null;
+            if (guanyador != null) {
+                est.tanca("final", nodesFinals, 0, finals.getProfunditat(), System.nanoTime() - inici);
+                publica(est);
+                PlayerMove jugada = new PlayerMove(guanyador, nodesFinals, finals.getProfunditat(), SearchType.MINIMAX_IDS);
+                jugada.setH((float) VALOR_VICTORIA);
+                return jugada;
+            }
+        }
+        
+        synchronized (this) {
+            profunditatCompletada = 0;
+            profunditatParcial = 0;
+            valorCompletat = 0;
+            movimentCompletat = moves[0];
+        }
+        if (numMoves == 1 && !estat.isCapture(moves[0])) {
+            // Movimiento forzado: basta con una iteración
+            temps.decideix();
+        }
+        List<Future<?>> tasques = llancaAjudants(gs);
+        
+        int currentBestMove = -1;
+        int millorAnterior = -1;
         int depth = 1;
+        teValorAnterior = false;
         
-        // IDS: incrementar profundidad mientras haya tiempo
-        while (!timeoutOccurred && depth < 50) {
-            currentBestMove = searchAtDepth(gs, depth);
+        // IDS: incrementar profundidad mientras el gestor de tiempo lo permita
+        while (!timeoutOccurred && depth <= maxDepth) {
+            long iniciIteracio = System.nanoTime();
+            long nodesAbans = nodesExplorats + nodesQuiescencia;
+            currentBestMove = cercaIteracio(estat, depth);
             
-            if (!timeoutOccurred && currentBestMove != null) {
-                bestMove = currentBestMove;
-                maxDepthReached = depth;
+            if (!timeoutOccurred && currentBestMove >= 0) {
+                est.afegeixIteracio(depth, nodesExplorats + nodesQuiescencia - nodesAbans,
+                        System.nanoTime() - iniciIteracio, currentBestMove, valorArrel);
+                registraResultat(depth, currentBestMove, valorArrel);
+                temps.iteracioAcabada(nodesExplorats + nodesQuiescencia, currentBestMove != millorAnterior);
+                millorAnterior = currentBestMove;
+                if (Math.abs(valorArrel) >= VALOR_VICTORIA) {
+                    // Victoria o derrota segura: más profundidad no cambia nada
+                    temps.decideix();
+                }
+            } else if (currentBestMove >= 0) {
+                registraParcial(depth, currentBestMove);
             }
             
-            depth++;
+            // Si un ayudante ya ha completado más profundidad, continuar desde allí
+            depth = Math.max(depth + 1, profunditatCompletada() + 1);
             
-            // Parar si ya hemos usado el 70% del tiempo
-            long elapsed = System.currentTimeMillis() - startTime;
-            if (elapsed > TIMEOUT_MS * 0.7) {
+            if (!temps.potComencarIteracio()) {
                 break;
             }
         }
         
-        System.out.println("IDS - Profundidad: " + maxDepthReached + ", Nodos: " + nodesExplorats);
+        long nodesTotals = nodesExplorats + nodesQuiescencia + nodesFinals + aturaAjudants(tasques);
+        long quiescenciaTotal = nodesQuiescencia;
+        for (PlayerMiniMaxIDS ajudant : ajudants) {
+            quiescenciaTotal += ajudant.nodesQuiescencia;
+            est.suma(ajudant.estadistiques);
+        }
+        int bestMove;
+        double valor;
+        synchronized (this) {
+            bestMove = movimentCompletat;
+            maxDepthReached = profunditatCompletada;
+            valor = valorCompletat;
+        }
         
-        List<Point> moveSequence = generarSequenciaMoviments(gs, bestMove);
+        List<Point> moveSequence = captures.completaTorn(estat, bestMove);
+        est.tanca("cerca", nodesTotals, quiescenciaTotal, maxDepthReached, System.nanoTime() - inici);
+        publica(est);
+        
+        if (ponderar) {
+            llancaPonderacio(estat, moveSequence);
+        }
         
-        return new PlayerMove(moveSequence, nodesExplorats, maxDepthReached, SearchType.MINIMAX_IDS);
+        PlayerMove jugada = new PlayerMove(moveSequence, nodesTotals, maxDepthReached, SearchType.MINIMAX_IDS);
+        // Valor de la última iteración completa, para quien mueve
+        jugada.setH((float) valor);
+        return jugada;
+    }
+    
+    /**
+    * Publica las estadísticas de una jugada acabada.
+    */
+    private void publica(EstadistiquesCerca est) {
+        jugades++;
+        darreres = est;
+        monitor.publica(est);
+        if (registre != null) {
+            registre.escriu(name, jugades, est);
+        }
+        if (traca) {
+            System.out.println(est.resum());
+        }
+    }
+    
+    /**
+    * Para la ponderación en curso, si hay, e informa de si llegó a buscar
+    * la posición que hay que jugar ahora.
+    *
+    * @param clau clave de la posición que hay que jugar ahora
+    * @return "acierto", "respuesta en la tabla" o "fallo", o {@code null}
+    *         si no se estaba ponderando
+    */
+    private String aturaPonderacio(long clau) {
+        if (ponderacio == null || !ponderacio.atura(() -> timeoutOccurred = true)) {
+            return null;
+        }
+        String resultat;
+        if (clau == clauPonderacio) {
+            resultat = "acierto";
+        } else if (taula.consulta(clau) != 0) {
+            resultat = "respuesta en la tabla";
+        } else {
+            resultat = "fallo";
+        }
+        if (traca) {
+            System.out.println("IDS - Ponderación: " + resultat + ", Profundidad: " + profunditatPonderacio
+                    + " (todas las respuestas: " + profunditatRespostes + "), Nodos: " + nodesPonderacio);
+        }
+        return resultat;
     }
     
     /**
-    * Ejecuta una búsqueda Minimax hasta una profundidad concreta.
+    * Empieza a ponderar la posición en la que le toca al rival. Antes, si
+    * la continuación que dejó la búsqueda en la tabla permite prever su
+    * respuesta, se busca la posición resultante.
+    *
+    * @param estat posición en la que se ha jugado (no se modifica)
+    * @param torn turno que se devuelve
+    */
+    private void llancaPonderacio(GameStatusTunned estat, List<Point> torn) {
+        GameStatusTunned arrel = new GameStatusTunned(estat);
+        activaSimetries(arrel);
+        for (Point p : torn) {
+            arrel.placeStone(arrel.toCell(p));
+        }
+        if (arrel.isGameOver()) {
+            return;
+        }
+        GameStatusTunned prevista = new GameStatusTunned(arrel);
+        activaSimetries(prevista);
+        while (!prevista.isGameOver() && prevista.getCurrentPlayer() != myColor) {
+            int moviment = movimentTaula(prevista);
+            if (moviment < 0) {
+                break;
+            }
+            prevista.placeStone(moviment);
+        }
+        boolean teRespostaPrevista = !prevista.isGameOver() && prevista.getCurrentPlayer() == myColor;
+        clauPonderacio = teRespostaPrevista ? clau(prevista) : 0;
+        profunditatPonderacio = 0;
+        profunditatRespostes = 0;
+        int objectiu = maxDepthReached;
+        timeoutOccurred = false;
+        ponderacio.llanca(() -> pondera(teRespostaPrevista ? prevista : null, arrel, objectiu));
+    }
+    
+    /**
+    * Búsqueda de la ponderación, sin más límite que la señal de parada (o
+    * el máximo del gestor de tiempo); solo llena la tabla. Primero el bucle
+    * IDS de {@link #move} sobre la respuesta prevista, hasta la profundidad
+    * de la última jugada; después, con el tiempo que quede, la posición del
+    * rival, que cubre todas sus respuestas.
+    *
+    * @param prevista posición tras la respuesta prevista, o {@code null}
+    * @param arrel posición en la que le toca al rival
+    * @param objectiu profundidad a la que se busca la respuesta prevista
+    */
+    private void pondera(GameStatusTunned prevista, GameStatusTunned arrel, int objectiu) {
+        // Contadores propios: los de la jugada ya están publicados
+        estadistiques = new EstadistiquesCerca();
+        nodesExplorats = 0;
+        nodesQuiescencia = 0;
+        temps.iniciaPonderacio();
+        taula.novaCerca();
+        ordenacio.novaCerca();
+        if (prevista != null) {
+            teValorAnterior = false;
+            for (int depth = 1; !timeoutOccurred && depth <= Math.min(objectiu, maxDepth); depth++) {
+                int moviment = cercaIteracio(prevista, depth);
+                if (!timeoutOccurred && moviment >= 0) {
+                    profunditatPonderacio = depth;
+                }
+            }
+        }
+        boolean maximitzador = arrel.getCurrentPlayer() == myColor;
+        for (int depth = 1; !timeoutOccurred && depth <= maxDepth; depth++) {
+            profunditatIteracio = depth;
+            minimax(arrel, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, maximitzador);
+            if (!timeoutOccurred) {
+                profunditatRespostes = depth;
+            }
+        }
+        nodesPonderacio = nodesExplorats + nodesQuiescencia;
+    }
+    
+    /**
+    * Pone en marcha los hilos ayudantes sobre copias del estado.
+    *
+    * @param gs estado actual del juego
+    * @return tareas en curso
+    */
+    private List<Future<?>> llancaAjudants(GameStatus gs) {
+        List<Future<?>> tasques = new ArrayList<>();
+        if (ajudants.length == 0) {
+            return tasques;
+        }
+        if (fils == null) {
+            // Si nadie llama a close(), los hilos acaban solos al dejar de jugar
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(ajudants.length, ajudants.length,
+                    ESPERA_AJUDANTS_S, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "IDS-ajudant");
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            fils = pool;
+        }
+        for (PlayerMiniMaxIDS ajudant : ajudants) {
+            ajudant.timeoutOccurred = false;
+            long inici = estadistiques.inici(EstadistiquesCerca.COPIA);
+            GameStatusTunned copia = new GameStatusTunned(gs);
+            activaSimetries(copia);
+            estadistiques.fi(EstadistiquesCerca.COPIA, inici);
+            tasques.add(fils.submit(() -> ajudant.cercaAjudant(copia, myColor)));
+        }
+        return tasques;
+    }
+    
+    /**
+    * Detiene los ayudantes y espera a que acaben.
+    *
+    * @param tasques tareas lanzadas por {@link #llancaAjudants}
+    * @return nodos explorados por los ayudantes, quiescencia incluida
+    */
+    private long aturaAjudants(List<Future<?>> tasques) {
+        for (PlayerMiniMaxIDS ajudant : ajudants) {
+            ajudant.timeoutOccurred = true;
+        }
+        long nodes = 0;
+        for (int i = 0; i < tasques.size(); i++) {
+            try {
+                tasques.get(i).get();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+            nodes += ajudants[i].nodesExplorats + ajudants[i].nodesQuiescencia;
+        }
+        return nodes;
+    }
+    
+    /**
+    * Bucle IDS de un hilo ayudante. Los ayudantes pares empiezan una
+    * profundidad por delante del principal para repartir el trabajo.
+    *
+    * @param estat copia propia del estado
+    * @param color color del jugador que busca
+    */
+    private void cercaAjudant(GameStatusTunned estat, PlayerType color) {
+        myColor = color;
+        estadistiques.reinicia();
+        nodesExplorats = 0;
+        nodesQuiescencia = 0;
+        movimentsPerNivell = new int[MAX_DEPTH + 1][estat.getCellCount()];
+        captures.prepara(myColor, estat.getCellCount());
+        preparaOrdenacio(estat.getCellCount());
+        int salt = (indexAjudant + 1) & 1;
+        int depth = 1 + salt;
+        teValorAnterior = false;
+        while (!timeoutOccurred && depth <= principal.maxDepth) {
+            int moviment = cercaIteracio(estat, depth);
+            if (!timeoutOccurred && moviment >= 0) {
+                principal.registraResultat(depth, moviment, valorArrel);
+            } else if (moviment >= 0) {
+                principal.registraParcial(depth, moviment);
+            }
+            depth = Math.max(depth + 1, principal.profunditatCompletada() + 1 + salt);
+        }
+    }
+    
+    /**
+    * Reutiliza las tablas de ordenación si el tablero es de la misma mida
+    * (la historia de la jugada anterior sigue siendo útil) y las prepara
+    * para una nueva búsqueda.
+    */
+    private void preparaOrdenacio(int caselles) {
+        if (ordenacio == null || ordenacio.getCaselles() != caselles) {
+            ordenacio = new OrdenacioMoviments(caselles, MAX_DEPTH + 1);
+        }
+        ordenacio.novaCerca();
+    }
+    
+    /**
+    * Registra una iteración completa si es más profunda que la mejor conocida.
+    */
+    private synchronized void registraResultat(int depth, int moviment, double valor) {
+        if (depth > profunditatCompletada) {
+            profunditatCompletada = depth;
+            movimentCompletat = moviment;
+            valorCompletat = valor;
+        }
+    }
+    
+    /**
+    * Registra el mejor movimiento de una iteración interrumpida. Solo se usa
+    * si ninguna iteración completa llega a esa profundidad; la profundidad
+    * completada no cambia.
+    */
+    private synchronized void registraParcial(int depth, int moviment) {
+        if (depth > profunditatCompletada && depth > profunditatParcial) {
+            profunditatParcial = depth;
+            movimentCompletat = moviment;
+        }
+    }
+    
+    /**
+    * Indica si hay que parar: se ha pasado el límite duro de tiempo o el
+    * de nodos del jugador principal.
+    */
+    private boolean esgotat() {
+        PlayerMiniMaxIDS jugador = principal != null ? principal : this;
+        // El límite de nodos no corta la primera iteración: sin ella no hay valor
+        return temps.esgotat() || nodesExplorats + nodesQuiescencia >= jugador.maxNodes
+                && jugador.profunditatCompletada() > 0;
+    }
+    
+    private synchronized int profunditatCompletada() {
+        return profunditatCompletada;
+    }
+    
+    /**
+    * Busca una profundidad con ventana de aspiración centrada en el valor de
+    * la iteración anterior. Si el valor cae fuera, la ventana se ensancha
+    * por ese lado y se repite la búsqueda.
+    *
+    * <p>Si se agota el tiempo devuelve el mejor movimiento de la búsqueda
+    * interrumpida o, si no hay, el que provocó un fallo alto de la ventana
+    * en esta misma profundidad.</p>
+    *
+    * @param gs estado actual del juego
+    * @param depth profundidad de la iteración
+    * @return la casilla del mejor movimiento, o -1
+    */
+    private int cercaIteracio(GameStatusTunned gs, int depth) {
+        if (depth < PROFUNDITAT_ASPIRACIO || !teValorAnterior) {
+            int moviment = searchAtDepth(gs, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            actualitzaValorAnterior();
+            return moviment;
+        }
+        double baix = FINESTRA_ASPIRACIO;
+        double alt = FINESTRA_ASPIRACIO;
+        int movimentFallada = -1;
+        while (true) {
+            double alpha = baix > FINESTRA_MAXIMA ? Double.NEGATIVE_INFINITY : valorAnterior - baix;
+            double beta = alt > FINESTRA_MAXIMA ? Double.POSITIVE_INFINITY : valorAnterior + alt;
+            int moviment = searchAtDepth(gs, depth, alpha, beta);
+            if (timeoutOccurred) {
+                return moviment >= 0 ? moviment : movimentFallada;
+            }
+            if (valorArrel <= alpha) {
+                baix *= 4;
+            } else if (valorArrel >= beta) {
+                movimentFallada = moviment;
+                alt *= 4;
+            } else {
+                actualitzaValorAnterior();
+                return moviment;
+            }
+        }
+    }
+    
+    private void actualitzaValorAnterior() {
+        if (!timeoutOccurred) {
+            valorAnterior = valorArrel;
+            teValorAnterior = true;
+        }
+    }
+    
+    /**
+    * Ejecuta una búsqueda PVS de la raíz hasta una profundidad concreta: el
+    * primer movimiento con la ventana completa y el resto con ventana nula,
+    * repitiendo con la ventana completa los que la superan.
+    *
+    * <p>Deja el valor obtenido en {@code valorArrel}. Si se agota el tiempo
+    * devuelve el mejor de los movimientos que se han acabado de buscar: un
+    * movimiento solo pasa a ser el mejor si ha demostrado superar a los
+    * anteriores, así que es tan fiable como la iteración previa o más.</p>
     *
     * @param gs estado actual del juego
     * @param depth profundidad máxima de búsqueda
-    * @return el mejor movimiento encontrado a esa profundidad
+    * @param alpha cota inferior de la ventana
+    * @param beta cota superior de la ventana
+    * @return la casilla del mejor movimiento encontrado a esa profundidad, o -1
     */
-    private Point searchAtDepth(GameStatus gs, int depth) {
-        List<Point> moves = gs.getMoves();
+    private int searchAtDepth(GameStatusTunned gs, int depth, double alpha, double beta) {
+        int[] moves = movimentsPerNivell[depth];
+        int numMoves = gs.getMoves(moves);
+        profunditatIteracio = depth;
+        double alphaOriginal = alpha;
         
-        List<Point> movesOrdenados = ordenarMoviments(gs, moves);
+        // El mejor movimiento de la iteración anterior se prueba primero
+        long entrada = taula.consulta(clau(gs));
+        int movimentTaula = entrada != 0 ? desDeTaula(gs, TranspositionTable.moviment(entrada)) : -1;
+        ordenacio.ordena(gs, moves, numMoves, 0, movimentTaula);
         
-        Point bestMove = null;
+        int bestMove = -1;
         double bestValue = Double.NEGATIVE_INFINITY;
-        double alpha = Double.NEGATIVE_INFINITY;
-        double beta = Double.POSITIVE_INFINITY;
         
-        for(Point move : movesOrdenados) {
+        for (int i = 0; i < numMoves; i++) {
             if(timeoutOccurred) {
                 break;
             }
             
-            GameStatus nextState = new GameStatus(gs);
-            nextState.placeStone(move);
+            int move = moves[i];
+            gs.placeStone(move);
             
-            boolean nextIsMax = (nextState.getCurrentPlayer() == myColor);
+            boolean nextIsMax = (gs.getCurrentPlayer() == myColor);
             
-            double value = minimax(nextState, depth - 1, alpha, beta, nextIsMax);
+            double value;
+            if (bestMove < 0) {
+                value = minimax(gs, depth - 1, alpha, beta, nextIsMax);
+            } else {
+                value = minimax(gs, depth - 1, alpha, alpha + 1, nextIsMax);
+                if (value > alpha && !timeoutOccurred) {
+                    // Ya ha demostrado ser mejor que el actual; si no hay tiempo
+                    // para el valor exacto, basta con eso
+                    bestMove = move;
+                    bestValue = value;
+                    if (value < beta) {
+                        value = minimax(gs, depth - 1, alpha, beta, nextIsMax);
+                    }
+                }
+            }
+            gs.undo();
             
-            if(value > bestValue) {
+            if (timeoutOccurred) {
+                break;
+            }
+            
+            if(value > bestValue || bestMove < 0) {
                 bestValue = value;
                 bestMove = move;
             }
             
             alpha = Math.max(alpha, value);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        
+        valorArrel = bestValue;
+        if (!timeoutOccurred && bestMove >= 0) {
+            int cota = bestValue <= alphaOriginal ? TranspositionTable.COTA_SUPERIOR
+                     : bestValue >= beta ? TranspositionTable.COTA_INFERIOR
+                     : TranspositionTable.EXACTE;
+            // Con fallo bajo el mejor movimiento no significa nada: se
+            // conserva el que hubiera
+            int movimentGuardat = cota == TranspositionTable.COTA_SUPERIOR ? -1 : bestMove;
+            taula.guarda(clau(gs), depth, cota, (int) bestValue, capATaula(gs, movimentGuardat));
         }
         
         return bestMove;
     }
     
     /**
-    * Ordena los movimientos disponibles según una evaluación heurística
-    * rápida para mejorar la eficiencia de la poda Alpha-Beta.
+    * Movimiento guardado en la tabla para la posición, si aún es legal.
     *
     * @param gs estado actual del juego
-    * @param moviments lista de movimientos disponibles
-    * @return lista de movimientos ordenados de mejor a peor
+    * @return la casilla, o -1
     */
-    private List<Point> ordenarMoviments(GameStatus gs, List<Point> moviments) {
-        // Usar un Map para asociar cada movimiento con su valor
-        Map<Point, Double> valores = new HashMap<>();
-        
-        for (Point mov : moviments) {
-            GameStatus temp = new GameStatus(gs);
-            temp.placeStone(mov);
-            double valor = evaluacioRapida(temp);
-            valores.put(mov, valor);
+    private int movimentTaula(GameStatusTunned gs) {
+        long entrada = taula.consulta(clau(gs));
+        if (entrada == 0) {
+            return -1;
         }
-        
-        // Ordenar los movimientos por su valor descendente
-        List<Point> ordenados = new ArrayList<>(moviments);
-        ordenados.sort((a, b) -> Double.compare(valores.get(b), valores.get(a)));
-        
-        return ordenados;
+        int moviment = desDeTaula(gs, TranspositionTable.moviment(entrada));
+        return moviment >= 0 && moviment < gs.getCellCount() && gs.isLegal(moviment) ? moviment : -1;
     }
     
     /**
-    * Realiza una evaluación heurística rápida de un estado del juego.
-    * Se utiliza únicamente para ordenar movimientos.
+    * Activa las claves simétricas si la raíz es simétrica: entonces sus
+    * subárboles son imágenes unos de otros y la tabla los comparte. Si no
+    * lo es casi no hay transposiciones simétricas y las claves solo
+    * costarían tiempo (medido: 10-25% de nodos por segundo).
     *
-    * @param gs estado del juego a evaluar
-    * @return valor heurístico aproximado del estado
+    * @param gs estado recién creado
     */
-    private double evaluacioRapida(GameStatus gs) {
-        if (gs.isGameOver()) {
-            if (gs.GetWinner() == myColor) return 100000;
-            if (gs.GetWinner() == null) return 0;
-            return -100000;
-        }
-        
-        int misPiezas = 0;
-        int oponentePiezas = 0;
-        int size = gs.getSize();
-        
-        PlayerType oponent = (myColor == PlayerType.PLAYER1) ? 
-                              PlayerType.PLAYER2 : PlayerType.PLAYER1;
-        
-        for (int row = 0; row < (2*size)-1; row++) {
-            for (int col = 0; col < (2*size)-1; col++) {
-                PlayerType color = gs.getColor(row, col);
-                if (color == myColor) {
-                    misPiezas++;
-                } else if (color == oponent) {
-                    oponentePiezas++;
-                }
-            }
+    private static void activaSimetries(GameStatusTunned gs) {
+        if (gs.esSimetrica()) {
+            gs.activaSimetries();
         }
-        
-        return (misPiezas - oponentePiezas) * 10;
     }
     
     /**
-    * Genera la secuencia completa de movimientos incluyendo capturas
-    * consecutivas a partir de un primer movimiento.
+    * Clave de la posición en la tabla: la canónica si el estado mantiene
+    * las claves simétricas, y distinta según el color con el que jugamos
+    * porque las puntuaciones son desde su punto de vista (la tabla dura
+    * entre partidas, y en una serie se cambia de color).
     *
     * @param gs estado actual del juego
-    * @param primerMoviment primer movimiento de la secuencia
-    * @return lista de movimientos que forman la secuencia
+    * @return clave Zobrist
     */
-    private List<Point> generarSequenciaMoviments(GameStatus gs, Point primerMoviment) {
-        List<Point> sequencia = new ArrayList<>();
-        
-        if (primerMoviment == null) {
-            return sequencia;
-        }
-        
-        GameStatus estat = new GameStatus(gs);
-        Point movimentActual = primerMoviment;
-        PlayerType jugadorInicial = gs.getCurrentPlayer();
-        int maxIterations = 50;
-        int iterations = 0;
-        
-        while (movimentActual != null && iterations < maxIterations) {
-            sequencia.add(movimentActual);
-            estat.placeStone(movimentActual);
-            
-            if (estat.getCurrentPlayer() == jugadorInicial && !estat.isGameOver()) {
-                List<Point> proximMoviments = estat.getMoves();
-                if (proximMoviments != null && !proximMoviments.isEmpty()) {
-                    movimentActual = seleccionarMillorCaptura(estat, proximMoviments);
-                } else {
-                    break;
-                }
-            } else {
-                break;
-            }
-            
-            iterations++;
-        }
-        
-        return sequencia;
+    private long clau(GameStatusTunned gs) {
+        long clau = gs.getSimetries() != null ? gs.getHashCanonic() : gs.getHash();
+        return myColor == PlayerType.PLAYER2 ? clau ^ CLAU_PLAYER2 : clau;
     }
     
     /**
-     * Selecciona la mejor captura de entre los movimientos disponibles.
-     * 
-     * @param gs el estado actual del juego
-     * @param moviments la lista de movimientos disponibles
-     * @return el punto correspondiente a la mejor captura
-     */
-    private Point seleccionarMillorCaptura(GameStatus gs, List<Point> moviments) {
-        if (moviments == null || moviments.isEmpty()) {
-            return null;
+    * Pasa un movimiento leído de la tabla (en la orientación canónica) a la
+    * de la posición.
+    */
+    private static int desDeTaula(GameStatusTunned gs, int moviment) {
+        Simetries simetries = gs.getSimetries();
+        if (simetries == null || moviment < 0 || moviment >= gs.getCellCount()) {
+            return moviment;
         }
-        
-        Point millorMoviment = moviments.get(0);
-        double millorValor = Double.NEGATIVE_INFINITY;
-        
-        for (Point moviment : moviments) {
-            try {
-                GameStatus seguentEstat = new GameStatus(gs);
-                seguentEstat.placeStone(moviment);
-                double valor = evaluar(seguentEstat);
-                
-                if (valor > millorValor) {
-                    millorValor = valor;
-                    millorMoviment = moviment;
-                }
-            } catch (Exception e) {
-                continue;
-            }
+        return simetries.desfa(gs.getSimetriaCanonica(), moviment);
+    }
+    
+    /**
+    * Pasa un movimiento de la posición a la orientación canónica para
+    * guardarlo en la tabla.
+    */
+    private static int capATaula(GameStatusTunned gs, int moviment) {
+        Simetries simetries = gs.getSimetries();
+        if (simetries == null || moviment < 0) {
+            return moviment;
         }
-        
-        return millorMoviment;
+        return simetries.aplica(gs.getSimetriaCanonica(), moviment);
     }
     
     /**
@@ -294,13 +930,11 @@ public class PlayerMiniMaxIDS implements IPlayer, IAuto {
     * @param maximitzador indica si el nodo actual es maximizador
     * @return valor heurístico del estado evaluado
     */
-    private double minimax(GameStatus gs, int depth, double alpha, double beta, boolean maximitzador) {
-        // CORREGIDO: Chequear timeout periódicamente
-        if(nodesExplorats % 500 == 0) {
-            if(System.currentTimeMillis() - startTime > TIMEOUT_MS) {
-                timeoutOccurred = true;
-                return 0;
-            }
+    private double minimax(GameStatusTunned gs, int depth, double alpha, double beta, boolean maximitzador) {
+        // Consultar el reloj cada pocos nodos
+        if ((nodesExplorats & GestorTemps.NODES_CONSULTA) == 0 && esgotat()) {
+            timeoutOccurred = true;
+            return 0;
         }
         
         if(timeoutOccurred) {
@@ -309,69 +943,176 @@ public class PlayerMiniMaxIDS implements IPlayer, IAuto {
         
         nodesExplorats++;
         
-        if (depth == 0 || gs.isGameOver()) {
+        if (gs.isGameOver()) {
             return evaluar(gs);
         }
+        if (depth == 0) {
+            return captures.quiescencia(gs, alpha, beta, maximitzador, 0);
+        }
+        
+        // Consultar la tabla de transposiciones
+        long clau = clau(gs);
+        double alphaOriginal = alpha;
+        double betaOriginal = beta;
+        int movimentTaula = -1;
+        long entrada = taula.consulta(clau);
+        estadistiques.consultesTT++;
+        if (entrada == 0) {
+            if (taula.ple(clau)) {
+                estadistiques.colisionsTT++;
+            }
+        } else {
+            estadistiques.encertsTT++;
+            movimentTaula = desDeTaula(gs, TranspositionTable.moviment(entrada));
+            if (TranspositionTable.profunditat(entrada) >= depth) {
+                double valor = TranspositionTable.puntuacio(entrada);
+                switch (TranspositionTable.cota(entrada)) {
+                    case TranspositionTable.EXACTE:
+                        return valor;
+                    case TranspositionTable.COTA_INFERIOR:
+                        alpha = Math.max(alpha, valor);
+                        break;
+                    default:
+                        beta = Math.min(beta, valor);
+                        break;
+                }
+                if (beta <= alpha) {
+                    return valor;
+                }
+            }
+        }
         
-        List<Point> moviments = gs.getMoves();
+        int[] moviments = movimentsPerNivell[depth];
+        long inici = estadistiques.inici(EstadistiquesCerca.GENERACIO);
+        int numMoviments = gs.getMoves(moviments);
+        estadistiques.fi(EstadistiquesCerca.GENERACIO, inici);
         
-        if (moviments == null || moviments.isEmpty()) {
-            GameStatus proximEstat = new GameStatus(gs);
-            proximEstat.placeStone(null);
-            boolean nextIsMax = (proximEstat.getCurrentPlayer() == myColor);
-            return minimax(proximEstat, depth - 1, alpha, beta, nextIsMax);
+        if (numMoviments == 0) {
+            // Ningún jugador puede mover: la posición queda bloqueada
+            return evaluar(gs);
         }
+        estadistiques.nodesInterns++;
+        
+        // Movimiento de la tabla, capturas, asesinos e historia
+        int nivell = profunditatIteracio - depth;
+        ordenacio.puntua(gs, moviments, numMoviments, nivell, movimentTaula);
         
+        double valor;
+        int millorMoviment = -1;
         if (maximitzador) {
             double maxEval = Double.NEGATIVE_INFINITY;
-            for (Point moviment : moviments) {
+            for (int i = 0; i < numMoviments; i++) {
                 if(timeoutOccurred) break;
                 
-                GameStatus nextState = new GameStatus(gs);
-                nextState.placeStone(moviment);
+                ordenacio.seguent(moviments, i, numMoviments, nivell);
+                gs.placeStone(moviments[i]);
                 
-                boolean proximEsMax = (nextState.getCurrentPlayer() == myColor);
+                boolean proximEsMax = (gs.getCurrentPlayer() == myColor);
                 
-                double eval = minimax(nextState, depth - 1, alpha, beta, proximEsMax);
-                maxEval = Math.max(maxEval, eval);
+                double eval;
+                if (i == 0) {
+                    eval = minimax(gs, depth - 1, alpha, beta, proximEsMax);
+                } else {
+                    // Ventana nula: solo hay que saber si supera alpha
+                    eval = minimax(gs, depth - 1, alpha, alpha + 1, proximEsMax);
+                    if (eval > alpha && eval < beta) {
+                        eval = minimax(gs, depth - 1, alpha, beta, proximEsMax);
+                    }
+                }
+                gs.undo();
+                if (eval > maxEval) {
+                    maxEval = eval;
+                    millorMoviment = moviments[i];
+                }
                 alpha = Math.max(alpha, eval);
                 
                 if (beta <= alpha) {
+                    registraTall(gs, moviments[i], nivell, depth, i == 0);
                     break;
                 }
             }
-            return maxEval;
+            valor = maxEval;
         } else {
             double minEval = Double.POSITIVE_INFINITY;
             
-            for (Point moviment : moviments) {
+            for (int i = 0; i < numMoviments; i++) {
                 if(timeoutOccurred) break;
                 
-                GameStatus nextState = new GameStatus(gs);
-                nextState.placeStone(moviment);
+                ordenacio.seguent(moviments, i, numMoviments, nivell);
+                gs.placeStone(moviments[i]);
                 
-                boolean nextIsMax = (nextState.getCurrentPlayer() == myColor);
+                boolean nextIsMax = (gs.getCurrentPlayer() == myColor);
                 
-                double eval = minimax(nextState, depth - 1, alpha, beta, nextIsMax);
-                minEval = Math.min(minEval, eval);
+                double eval;
+                if (i == 0) {
+                    eval = minimax(gs, depth - 1, alpha, beta, nextIsMax);
+                } else {
+                    // Ventana nula: solo hay que saber si baja de beta
+                    eval = minimax(gs, depth - 1, beta - 1, beta, nextIsMax);
+                    if (eval < beta && eval > alpha) {
+                        eval = minimax(gs, depth - 1, alpha, beta, nextIsMax);
+                    }
+                }
+                gs.undo();
+                if (eval < minEval) {
+                    minEval = eval;
+                    millorMoviment = moviments[i];
+                }
                 beta = Math.min(beta, eval);
                 
                 if (beta <= alpha) {
+                    registraTall(gs, moviments[i], nivell, depth, i == 0);
                     break;
                 }
             }
-            return minEval;
+            valor = minEval;
+        }
+        
+        if (!timeoutOccurred) {
+            int cota = valor <= alphaOriginal ? TranspositionTable.COTA_SUPERIOR
+                     : valor >= betaOriginal ? TranspositionTable.COTA_INFERIOR
+                     : TranspositionTable.EXACTE;
+            taula.guarda(clau, depth, cota, (int) valor, capATaula(gs, millorMoviment));
         }
+        return valor;
+    }
+    
+    /**
+    * Anota en la ordenación el movimiento que ha provocado una poda.
+    *
+    * @param gs estado del nodo (ya deshecho el movimiento)
+    * @param moviment casilla del movimiento
+    * @param nivell distancia a la raíz
+    * @param depth profundidad restante del nodo
+    * @param primer cierto si es el primer movimiento probado
+    */
+    private void registraTall(GameStatusTunned gs, int moviment, int nivell, int depth, boolean primer) {
+        estadistiques.talls++;
+        if (primer) {
+            estadistiques.tallsPrimer++;
+        }
+        ordenacio.tall(gs.getTurn(), moviment, gs.isCapture(moviment), nivell, depth);
     }
     
      /**
     * Evalúa heurísticamente un estado del juego considerando piezas,
     * movilidad, control del centro y condiciones de victoria.
     *
+    * <p>Todos los términos los mantiene el estado de forma incremental, así
+    * que la evaluación es O(1). La movilidad se estima con las casillas
+    * libres del jugador con el turno (colocaciones que no capturan).</p>
+    *
     * @param gs estado del juego a evaluar
     * @return valor heurístico del estado
     */
-    private double evaluar(GameStatus gs) {
+    private double evaluar(GameStatusTunned gs) {
+        long inici = estadistiques.inici(EstadistiquesCerca.AVALUACIO);
+        double valor = avaluacioEstatica(gs);
+        estadistiques.fi(EstadistiquesCerca.AVALUACIO, inici);
+        return valor;
+    }
+    
+    private double avaluacioEstatica(GameStatusTunned gs) {
         if (gs.isGameOver()) {
             if (gs.GetWinner() == myColor) {
                 return 100000;
@@ -382,30 +1123,13 @@ public class PlayerMiniMaxIDS implements IPlayer, IAuto {
             }
         }
         
-        int pecesMeves = 0;
-        int pecesOponent = 0;
-        int size = gs.getSize();
-        int controlCentre = 0;
-        int centre = size - 1;
-        
         PlayerType oponent = (myColor == PlayerType.PLAYER1) ? 
                               PlayerType.PLAYER2 : PlayerType.PLAYER1;
         
-        for (int row = 0; row < (2*size)-1; row++) {
-            for (int col = 0; col < (2*size)-1; col++) {
-                PlayerType color = gs.getColor(row, col);
-                if (color == myColor) {
-                    pecesMeves++;
-                    int distCentre = Math.abs(row - centre) + Math.abs(col - centre);
-                    controlCentre += (size - distCentre);
-                } else if (color == oponent) {
-                    pecesOponent++;
-                }
-            }
-        }
-        
-        List<Point> movimentsDisponibles = gs.getMoves();
-        int movilitat = (movimentsDisponibles != null) ? movimentsDisponibles.size() : 0;
+        int pecesMeves = gs.getStoneCount(myColor);
+        int pecesOponent = gs.getStoneCount(oponent);
+        int controlCentre = gs.getCentreControl(myColor);
+        int movilitat = gs.getFreeCells(gs.getCurrentPlayer());
         
         double score = 0;
         score += (pecesMeves - pecesOponent) * 100;
@@ -423,6 +1147,26 @@ public class PlayerMiniMaxIDS implements IPlayer, IAuto {
     
     @Override
     public void timeout() {
+        temps.registraTimeout();
         timeoutOccurred = true;
+        for (PlayerMiniMaxIDS ajudant : ajudants) {
+            ajudant.timeoutOccurred = true;
+        }
+    }
+
+    /**
+    * Para la ponderación y libera su hilo y los ayudantes al acabar la
+    * partida. El jugador se puede seguir usando: la siguiente jugada los
+    * vuelve a crear.
+    */
+    @Override
+    public void close() {
+        if (ponderacio != null) {
+            ponderacio.tanca(() -> timeoutOccurred = true);
+        }
+        if (fils != null) {
+            fils.shutdown();
+            fils = null;
+        }
     }
 }
@@ -0,0 +1,86 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Hilo de ponderación: búsqueda en segundo plano mientras piensa el rival.
+ *
+ * <p>El jugador lanza la búsqueda con {@link #llanca} al acabar su
+ * {@code move()} y la para con {@link #atura} al principio del siguiente,
+ * antes de tocar ningún campo. La parada la hace el propio jugador con la
+ * señal que ya usa para el timeout, así que es inmediata: aquí solo se
+ * espera a que el hilo salga de la búsqueda.</p>
+ *
+ * <p>Cuando acaba la partida el jugador llama a {@link #tanca}, que para
+ * la ponderación y libera el hilo. El hilo es un daemon: si nadie la
+ * cierra, no impide que acabe el programa.</p>
+ *
+ * @author jieke
+ */
+public class Ponderacio {
+
+    private final String nom;
+    private ExecutorService fil;
+    private Future<?> tasca;
+
+    /**
+     * Crea el gestor; el hilo se crea con la primera ponderación.
+     *
+     * @param nom nombre del hilo
+     */
+    public Ponderacio(String nom) {
+        this.nom = nom;
+    }
+
+    /**
+     * Empieza a ponderar.
+     *
+     * @param cerca búsqueda a ejecutar en segundo plano
+     */
+    public void llanca(Runnable cerca) {
+        if (fil == null) {
+            fil = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, nom);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        tasca = fil.submit(cerca);
+    }
+
+    /**
+     * Para la ponderación en curso, si hay, y espera a que acabe.
+     *
+     * @param senyal acción que hace salir a la búsqueda
+     * @return cierto si había una ponderación
+     */
+    public boolean atura(Runnable senyal) {
+        if (tasca == null) {
+            return false;
+        }
+        senyal.run();
+        try {
+            tasca.get();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        tasca = null;
+        return true;
+    }
+
+    /**
+     * Para la ponderación en curso, si hay, y libera el hilo. Con otra
+     * {@link #llanca} se vuelve a crear.
+     *
+     * @param senyal acción que hace salir a la búsqueda
+     */
+    public void tanca(Runnable senyal) {
+        atura(senyal);
+        if (fil != null) {
+            fil.shutdown();
+            fil = null;
+        }
+    }
+}
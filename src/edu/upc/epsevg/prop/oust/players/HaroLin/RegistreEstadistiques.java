@@ -0,0 +1,92 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fichero donde se añaden las estadísticas de cada jugada: JSON por líneas
+ * o, si el nombre acaba en {@code .csv}, CSV con una fila por iteración y
+ * otra por jugada. Se escribe al acabar la jugada, fuera de la búsqueda.
+ *
+ * <p>Lo pueden compartir varios jugadores del mismo proceso (las escrituras
+ * están sincronizadas). El registro por defecto es el de la propiedad
+ * {@code -Doust.estadistiques=fitxer}.</p>
+ *
+ * @author jieke
+ */
+public class RegistreEstadistiques {
+
+    private static RegistreEstadistiques perDefecte;
+    private static boolean perDefecteCarregat;
+
+    private final Path fitxer;
+    private final boolean csv;
+    private final Writer sortida;
+
+    /**
+     * Abre un fichero de estadísticas (se añade al final si ya existe).
+     *
+     * @param fitxer fichero
+     * @throws IOException si no se puede abrir
+     */
+    public RegistreEstadistiques(Path fitxer) throws IOException {
+        this.fitxer = fitxer;
+        this.csv = fitxer.getFileName().toString().toLowerCase().endsWith(".csv");
+        boolean nou = !Files.exists(fitxer) || Files.size(fitxer) == 0;
+        this.sortida = Files.newBufferedWriter(fitxer, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (csv && nou) {
+            sortida.write(EstadistiquesCerca.capcaleraCsv());
+            sortida.write('\n');
+            sortida.flush();
+        }
+    }
+
+    /**
+     * Registro de la propiedad {@code oust.estadistiques}, abierto una sola
+     * vez por proceso.
+     *
+     * @return el registro, o {@code null} si no hay propiedad o no se puede abrir
+     */
+    public static synchronized RegistreEstadistiques perDefecte() {
+        if (!perDefecteCarregat) {
+            perDefecteCarregat = true;
+            String nom = System.getProperty("oust.estadistiques");
+            if (nom != null && !nom.isEmpty()) {
+                try {
+                    perDefecte = new RegistreEstadistiques(Paths.get(nom));
+                } catch (IOException ex) {
+                    System.err.println("Estadísticas " + nom + ": " + ex.getMessage());
+                }
+            }
+        }
+        return perDefecte;
+    }
+
+    /**
+     * Añade una jugada. Un error de escritura se avisa y no interrumpe la
+     * partida.
+     *
+     * @param jugador nombre del jugador
+     * @param jugada número de jugada del jugador
+     * @param e estadísticas de la jugada
+     */
+    public synchronized void escriu(String jugador, long jugada, EstadistiquesCerca e) {
+        try {
+            if (csv) {
+                sortida.write(e.csv(jugador, jugada));
+            } else {
+                sortida.write(e.json(jugador, jugada));
+                sortida.write('\n');
+            }
+            sortida.flush();
+        } catch (IOException ex) {
+            System.err.println("Estadísticas " + fitxer + ": " + ex.getMessage());
+        }
+    }
+}
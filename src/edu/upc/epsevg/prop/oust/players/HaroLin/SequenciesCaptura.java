@@ -0,0 +1,235 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import java.util.Arrays;
+
+/**
+ * Generador perezoso de secuencias de capturas (macro-movimientos).
+ *
+ * <p>Mientras un jugador captura vuelve a tirar, así que un turno es una
+ * cadena de capturas seguida de una tirada sin captura. Este generador
+ * recorre en profundidad todas las cadenas que se pueden hacer desde una
+ * posición sobre el propio estado, con {@code placeStone}/{@code undo} y sin
+ * copiarlo: cada llamada a {@link #seguent} deja el estado al final de la
+ * siguiente secuencia, y la siguiente secuencia solo se genera cuando se
+ * pide, así que quien lo usa puede dejar de pedir (o cortar con
+ * {@link #atura}) sin pagar el resto.</p>
+ *
+ * <p>Dos secuencias que llegan a la misma posición (las mismas capturas en
+ * otro orden) son la misma: las posiciones ya vistas se detectan por su
+ * clave Zobrist y ni se devuelven ni se vuelven a extender.</p>
+ *
+ * <p>En cada nivel las capturas se prueban por piedras enemigas
+ * vecinas.</p>
+ *
+ * @author jieke
+ */
+public class SequenciesCaptura {
+
+    private final int caselles;
+    private final int[][] moviments;
+    private final int[] numMoviments;
+    private final int[] index;
+    private final int[] cami;
+    private final int[] punts;
+    private long[] vistes;
+    private int numVistes;
+
+    private GameStatusTunned gs;
+    private int nivell;
+    private int longitud;
+    private boolean pendent;
+    private int generades;
+
+    /**
+     * Crea los buffers para un tablero.
+     *
+     * @param caselles número de casillas del tablero
+     */
+    public SequenciesCaptura(int caselles) {
+        this.caselles = caselles;
+        this.moviments = new int[caselles + 1][caselles];
+        this.numMoviments = new int[caselles + 1];
+        this.index = new int[caselles + 1];
+        this.cami = new int[caselles + 1];
+        this.punts = new int[caselles];
+        this.vistes = new long[1024];
+    }
+
+    /**
+     * Número de casillas del tablero para el que se crearon los buffers.
+     *
+     * @return casillas
+     */
+    public int getCaselles() {
+        return caselles;
+    }
+
+    /**
+     * Empieza a generar las secuencias de capturas del jugador con el turno
+     * en {@code gs}. El estado se modifica durante la generación y vuelve a
+     * quedar igual cuando {@link #seguent} devuelve falso o se llama a
+     * {@link #atura}.
+     *
+     * @param gs estado desde el que se captura
+     */
+    public void inicia(GameStatusTunned gs) {
+        this.gs = gs;
+        nivell = 0;
+        longitud = 0;
+        pendent = false;
+        generades = 0;
+        Arrays.fill(vistes, 0);
+        numVistes = 0;
+        prepara(0);
+    }
+
+    /**
+     * Avanza a la siguiente secuencia que llega a una posición nueva y la
+     * aplica sobre el estado. Después de una secuencia vienen sus
+     * extensiones.
+     *
+     * @return cierto si hay secuencia; falso si ya no quedan (el estado
+     *         vuelve a estar como al llamar a {@link #inicia})
+     */
+    public boolean seguent() {
+        if (pendent) {
+            pendent = false;
+            if (gs.isGameOver()) {
+                gs.undo();
+            } else {
+                nivell++;
+                prepara(nivell);
+            }
+        }
+        while (true) {
+            if (index[nivell] == numMoviments[nivell]) {
+                if (nivell == 0) {
+                    longitud = 0;
+                    return false;
+                }
+                // Nivel agotado: deshacer la captura que lo abrió
+                nivell--;
+                gs.undo();
+                continue;
+            }
+            int m = moviments[nivell][index[nivell]++];
+            gs.placeStone(m);
+            if (!afegeix(gs.getHash())) {
+                gs.undo();
+                continue;
+            }
+            cami[nivell] = m;
+            longitud = nivell + 1;
+            pendent = true;
+            generades++;
+            return true;
+        }
+    }
+
+    /**
+     * Deja de generar y devuelve el estado a la posición inicial.
+     */
+    public void atura() {
+        if (pendent) {
+            gs.undo();
+            pendent = false;
+        }
+        while (nivell > 0) {
+            nivell--;
+            gs.undo();
+        }
+        index[0] = numMoviments[0];
+        longitud = 0;
+    }
+
+    /**
+     * Número de capturas de la secuencia actual.
+     *
+     * @return longitud de la secuencia
+     */
+    public int longitud() {
+        return longitud;
+    }
+
+    /**
+     * Casillas de la secuencia actual, en orden; solo las
+     * {@link #longitud()} primeras son válidas y cambian con la siguiente
+     * llamada a {@link #seguent}.
+     *
+     * @return buffer con las capturas
+     */
+    public int[] tirades() {
+        return cami;
+    }
+
+    /**
+     * Secuencias distintas devueltas desde {@link #inicia}.
+     *
+     * @return número de secuencias
+     */
+    public int generades() {
+        return generades;
+    }
+
+    /**
+     * Genera las capturas de un nivel ordenadas por piedras enemigas vecinas.
+     */
+    private void prepara(int n) {
+        int[] movs = moviments[n];
+        int num = gs.getCaptureMoves(movs);
+        int torn = gs.getTurn();
+        for (int i = 0; i < num; i++) {
+            punts[i] = OrdenacioMoviments.enemicsVeins(gs, movs[i], torn);
+        }
+        for (int i = 0; i < num - 1; i++) {
+            int millor = i;
+            for (int j = i + 1; j < num; j++) {
+                if (punts[j] > punts[millor]) {
+                    millor = j;
+                }
+            }
+            int t = movs[i]; movs[i] = movs[millor]; movs[millor] = t;
+            t = punts[i]; punts[i] = punts[millor]; punts[millor] = t;
+        }
+        numMoviments[n] = num;
+        index[n] = 0;
+    }
+
+    /**
+     * Añade una clave al conjunto de posiciones vistas (direccionamiento
+     * abierto).
+     *
+     * @return falso si ya estaba
+     */
+    private boolean afegeix(long clau) {
+        if (clau == 0) {
+            clau = 1;
+        }
+        if (2 * (numVistes + 1) > vistes.length) {
+            long[] antigues = vistes;
+            vistes = new long[antigues.length * 2];
+            numVistes = 0;
+            for (long c : antigues) {
+                if (c != 0) {
+                    insereix(c);
+                }
+            }
+        }
+        return insereix(clau);
+    }
+
+    private boolean insereix(long clau) {
+        int mascara = vistes.length - 1;
+        int i = (int) (clau ^ (clau >>> 32)) & mascara;
+        while (vistes[i] != 0) {
+            if (vistes[i] == clau) {
+                return false;
+            }
+            i = (i + 1) & mascara;
+        }
+        vistes[i] = clau;
+        numVistes++;
+        return true;
+    }
+}
@@ -0,0 +1,317 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+import edu.upc.epsevg.prop.oust.GameStatusTunned;
+import edu.upc.epsevg.prop.oust.PlayerType;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Solucionador exacto de finales: demuestra si el jugador con el turno gana
+ * o pierde, sin función de evaluación.
+ *
+ * <p>La búsqueda es alpha-beta sobre tres valores, desde el punto de vista
+ * del jugador con el turno: {@link #GUANYA}, {@link #PERD} y
+ * {@link #DESCONEGUT} (la línea llega a la profundidad máxima sin acabar la
+ * partida). Un nodo está ganado en cuanto un movimiento gana (poda) y
+ * perdido si todos pierden. Como en Oust capturar vuelve a dar el turno, el
+ * valor de un hijo solo cambia de signo si el turno ha pasado al rival.</p>
+ *
+ * <p>Tiene su propia tabla de transposiciones: los resultados demostrados no
+ * dependen de la profundidad ni del jugador de la raíz, así que se guardan
+ * para siempre y sirven en las jugadas siguientes. Los desconocidos guardan
+ * la profundidad a la que no se pudo demostrar nada. Antes de buscar los
+ * hijos de un nodo se consultan todos en la tabla (<i>enhanced transposition
+ * cutoff</i>): si alguno ya está demostrado como victoria, el nodo está
+ * resuelto sin buscar.</p>
+ *
+ * <p>{@link #resol} profundiza iterativamente hasta demostrar el resultado o
+ * llegar al límite de tiempo.</p>
+ *
+ * @author jieke
+ */
+public class SolucionadorFinals {
+
+    /** Victoria demostrada del jugador con el turno. */
+    public static final int GUANYA = 1;
+    /** Derrota demostrada del jugador con el turno. */
+    public static final int PERD = -1;
+    /** No demostrado a la profundidad buscada. */
+    public static final int DESCONEGUT = 0;
+
+    /** El bando fuerte de un final tiene al menos estas veces las piedras del débil. */
+    private static final int PROPORCIO_FINAL = 4;
+    private static final int MAX_PROFUNDITAT = 96;
+    /** Profundidad restante a partir de la cual se hace ETC. */
+    private static final int PROFUNDITAT_ETC = 3;
+    private static final int BYTES_ENTRADA = 12;
+
+    // Disposición de los bits de los datos de una entrada
+    private static final int MASCARA_MOVIMENT = 0xFFFF;
+    private static final int SHIFT_PROFUNDITAT = 16;
+    private static final int SHIFT_RESULTAT = 24;
+
+    private final long[] claus;
+    private final int[] dades;
+    private final int mascara;
+
+    private final int caselles;
+    private final int[][] moviments;
+    private final OrdenacioMoviments ordenacio;
+
+    private long limit;
+    private boolean aturat;
+    private long nodes;
+    private int profunditat;
+    private int millorMoviment;
+
+    /**
+     * Crea un solucionador con una tabla de como máximo {@code megabytes} MB.
+     *
+     * @param caselles número de casillas del tablero
+     * @param megabytes memoria de la tabla de transposiciones
+     */
+    public SolucionadorFinals(int caselles, int megabytes) {
+        long entrades = Math.max(2, (long) megabytes * 1024 * 1024 / BYTES_ENTRADA);
+        int potencia = Integer.highestOneBit((int) Math.min(entrades, 1 << 30));
+        this.claus = new long[potencia];
+        this.dades = new int[potencia];
+        this.mascara = potencia - 1;
+        this.caselles = caselles;
+        this.moviments = new int[MAX_PROFUNDITAT + 1][caselles];
+        this.ordenacio = new OrdenacioMoviments(caselles, MAX_PROFUNDITAT + 1);
+    }
+
+    /**
+     * Número de casillas del tablero para el que se creó.
+     *
+     * @return casillas
+     */
+    public int getCaselles() {
+        return caselles;
+    }
+
+    /**
+     * Indica si la posición es un final: el jugador con menos piedras tiene
+     * como mucho {@code pedres} y el otro al menos {@link #PROPORCIO_FINAL}
+     * veces más. En Oust el tablero no se llena (las capturas lo vacían), así
+     * que lo que marca el final es un bando casi eliminado.
+     *
+     * @param gs posición
+     * @param pedres piedras máximas del bando débil
+     * @return cierto si vale la pena intentar resolverla
+     */
+    public static boolean esFinal(GameStatusTunned gs, int pedres) {
+        int p1 = gs.getStoneCount(PlayerType.PLAYER1);
+        int p2 = gs.getStoneCount(PlayerType.PLAYER2);
+        return Math.min(p1, p2) <= pedres && Math.max(p1, p2) >= PROPORCIO_FINAL * pedres;
+    }
+
+    /**
+     * Intenta demostrar el resultado de la posición para el jugador con el
+     * turno, profundizando hasta conseguirlo o hasta {@code limit}.
+     *
+     * @param gs posición (se modifica durante la búsqueda y queda igual)
+     * @param limit instante ({@link System#nanoTime()}) en el que parar
+     * @return {@link #GUANYA}, {@link #PERD} o {@link #DESCONEGUT}
+     */
+    public int resol(GameStatusTunned gs, long limit) {
+        this.limit = limit;
+        aturat = false;
+        nodes = 0;
+        profunditat = 0;
+        millorMoviment = -1;
+        ordenacio.novaCerca();
+        int resultat = DESCONEGUT;
+        for (int d = 1; d <= MAX_PROFUNDITAT && resultat == DESCONEGUT; d++) {
+            int r = cerca(gs, d, 0);
+            if (aturat) {
+                break;
+            }
+            resultat = r;
+            profunditat = d;
+        }
+        long dada = consulta(gs.getHash());
+        if (resultat == GUANYA && dada >= 0) {
+            millorMoviment = (int) dada & MASCARA_MOVIMENT;
+        }
+        return resultat;
+    }
+
+    /**
+     * Turno ganador de una posición ya resuelta como {@link #GUANYA}: se
+     * siguen los movimientos que demostraron la victoria mientras el
+     * jugador siga tirando. Si alguno se ha perdido de la tabla se vuelve a
+     * resolver esa posición con el mismo límite.
+     *
+     * @param gs posición (no se modifica)
+     * @return tiradas del turno, o {@code null} si no se puede reconstruir
+     */
+    public List<Point> tornGuanyador(GameStatusTunned gs) {
+        GameStatusTunned estat = new GameStatusTunned(gs);
+        PlayerType jugador = estat.getCurrentPlayer();
+        List<Point> tirades = new ArrayList<>();
+        do {
+            int moviment = movimentGuanyador(estat.getHash());
+            if (moviment < 0) {
+                if (resol(estat, limit) != GUANYA) {
+                    return null;
+                }
+                moviment = millorMoviment;
+            }
+            if (moviment < 0 || !estat.isLegal(moviment)) {
+                return null;
+            }
+            tirades.add(estat.toPoint(moviment));
+            estat.placeStone(moviment);
+        } while (!estat.isGameOver() && estat.getCurrentPlayer() == jugador);
+        return tirades;
+    }
+
+    /**
+     * Nodos de la última llamada a {@link #resol}.
+     *
+     * @return nodos
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Última profundidad completada por {@link #resol}.
+     *
+     * @return profundidad
+     */
+    public int getProfunditat() {
+        return profunditat;
+    }
+
+    /**
+     * Búsqueda con profundidad restante {@code depth}.
+     */
+    private int cerca(GameStatusTunned gs, int depth, int nivell) {
+        nodes++;
+        if ((nodes & GestorTemps.NODES_CONSULTA) == 0 && System.nanoTime() - limit > 0) {
+            aturat = true;
+        }
+        if (aturat) {
+            return DESCONEGUT;
+        }
+        if (gs.isGameOver()) {
+            PlayerType guanyador = gs.GetWinner();
+            if (guanyador == null) {
+                return DESCONEGUT;
+            }
+            return guanyador == gs.getCurrentPlayer() ? GUANYA : PERD;
+        }
+        if (depth == 0) {
+            return DESCONEGUT;
+        }
+
+        long clau = gs.getHash();
+        long dada = consulta(clau);
+        int movimentTaula = -1;
+        if (dada >= 0) {
+            int resultat = resultat(dada);
+            if (resultat != DESCONEGUT || profunditat(dada) >= depth) {
+                return resultat;
+            }
+            movimentTaula = (int) dada & MASCARA_MOVIMENT;
+        }
+
+        int[] movs = moviments[nivell];
+        int num = gs.getMoves(movs);
+        if (num == 0) {
+            return DESCONEGUT;
+        }
+        PlayerType jugador = gs.getCurrentPlayer();
+
+        if (depth >= PROFUNDITAT_ETC) {
+            // ETC: algún hijo ya demostrado como victoria nuestra
+            for (int i = 0; i < num; i++) {
+                gs.placeStone(movs[i]);
+                long fill = consulta(gs.getHash());
+                boolean mateix = gs.getCurrentPlayer() == jugador;
+                gs.undo();
+                if (fill >= 0 && resultat(fill) != DESCONEGUT
+                        && (mateix ? resultat(fill) : -resultat(fill)) == GUANYA) {
+                    guarda(clau, GUANYA, depth, movs[i]);
+                    return GUANYA;
+                }
+            }
+        }
+
+        ordenacio.puntua(gs, movs, num, nivell, movimentTaula);
+        int millor = PERD;
+        int millorMov = movs[0];
+        int torn = gs.getTurn();
+        for (int i = 0; i < num; i++) {
+            int m = ordenacio.seguent(movs, i, num, nivell);
+            boolean captura = gs.isCapture(m);
+            gs.placeStone(m);
+            int valor = cerca(gs, depth - 1, nivell + 1);
+            if (gs.getCurrentPlayer() != jugador) {
+                valor = -valor;
+            }
+            gs.undo();
+            if (aturat) {
+                return DESCONEGUT;
+            }
+            if (valor == GUANYA) {
+                ordenacio.tall(torn, m, captura, nivell, depth);
+                guarda(clau, GUANYA, depth, m);
+                return GUANYA;
+            }
+            if (valor > millor) {
+                millor = valor;
+                millorMov = m;
+            }
+        }
+        guarda(clau, millor, depth, millorMov);
+        return millor;
+    }
+
+    /**
+     * Movimiento que demostró la victoria en una posición, si está en la
+     * tabla.
+     */
+    private int movimentGuanyador(long clau) {
+        long dada = consulta(clau);
+        if (dada < 0 || resultat(dada) != GUANYA) {
+            return -1;
+        }
+        return (int) dada & MASCARA_MOVIMENT;
+    }
+
+    /**
+     * Datos de la entrada de una posición, o -1 si no está.
+     */
+    private long consulta(long clau) {
+        int i = (int) clau & mascara;
+        return claus[i] == clau ? dades[i] & 0xFFFFFFFFL : -1;
+    }
+
+    /**
+     * Guarda una entrada; un resultado demostrado no se sustituye por uno
+     * desconocido de otra posición.
+     */
+    private void guarda(long clau, int resultat, int depth, int moviment) {
+        int i = (int) clau & mascara;
+        if (claus[i] != clau && claus[i] != 0 && resultat == DESCONEGUT
+                && resultat(dades[i] & 0xFFFFFFFFL) != DESCONEGUT) {
+            return;
+        }
+        claus[i] = clau;
+        dades[i] = (moviment & MASCARA_MOVIMENT)
+                | (Math.min(depth, 0xFF) << SHIFT_PROFUNDITAT)
+                | ((resultat + 1) << SHIFT_RESULTAT);
+    }
+
+    private static int resultat(long dada) {
+        return (int) (dada >>> SHIFT_RESULTAT) - 1;
+    }
+
+    private static int profunditat(long dada) {
+        return (int) (dada >>> SHIFT_PROFUNDITAT) & 0xFF;
+    }
+}
@@ -0,0 +1,186 @@
+package edu.upc.epsevg.prop.oust.players.HaroLin;
+
+/**
+ * Tabla de transposiciones de tamaño fijo basada en arrays primitivos.
+ *
+ * <p>Cada entrada ocupa dos {@code long}: la clave Zobrist (combinada con los
+ * datos, ver más abajo) y un {@code long} empaquetado con la puntuación, el
+ * mejor movimiento, la profundidad, el tipo de cota y la edad (búsqueda en la
+ * que se guardó).
+ * Las entradas se agrupan en cubos de dos; al guardar se sustituye la entrada
+ * de la misma posición o, si no hay, la más antigua y menos profunda.</p>
+ *
+ * <p>La consulta devuelve el {@code long} empaquetado (0 si no hay entrada) y
+ * se decodifica con los métodos estáticos, para no crear objetos.</p>
+ *
+ * <p>La tabla se puede compartir entre hilos sin bloqueos: en lugar de la
+ * clave se guarda {@code clave ^ datos}, así que si dos hilos escriben a la
+ * vez la misma entrada y quedan mezcladas, la verificación falla y la
+ * consulta la trata como ausente.</p>
+ *
+ * @author jieke
+ */
+public class TranspositionTable {
+
+    /** El valor real es exactamente la puntuación guardada. */
+    public static final int EXACTE = 1;
+    /** El valor real es mayor o igual (hubo poda beta). */
+    public static final int COTA_INFERIOR = 2;
+    /** El valor real es menor o igual (ningún movimiento superó alpha). */
+    public static final int COTA_SUPERIOR = 3;
+
+    private static final int BYTES_ENTRADA = 16;
+
+    // Disposición de los bits del long de datos
+    private static final int SHIFT_MOVIMENT = 32;
+    private static final int SHIFT_PROFUNDITAT = 44;
+    private static final int SHIFT_COTA = 52;
+    private static final int SHIFT_EDAT = 54;
+    private static final long BIT_VALID = 1L << 62;
+
+    private final long[] claus;
+    private final long[] dades;
+    private final int mascara;
+    private int edat;
+
+    /**
+     * Crea una tabla que ocupa como máximo {@code megabytes} MB.
+     *
+     * @param megabytes memoria máxima de la tabla
+     */
+    public TranspositionTable(int megabytes) {
+        long entrades = Math.max(2, (long) megabytes * 1024 * 1024 / BYTES_ENTRADA);
+        int potencia = Integer.highestOneBit((int) Math.min(entrades, 1 << 30));
+        this.claus = new long[potencia];
+        this.dades = new long[potencia];
+        this.mascara = potencia - 1;
+    }
+
+    /**
+     * Número de entradas de la tabla.
+     *
+     * @return capacidad en entradas
+     */
+    public int capacitat() {
+        return claus.length;
+    }
+
+    /**
+     * Marca el inicio de una nueva búsqueda: las entradas anteriores pasan a
+     * ser las primeras candidatas a sustituir.
+     */
+    public void novaCerca() {
+        edat = (edat + 1) & 0xFF;
+    }
+
+    /**
+     * Borra todas las entradas.
+     */
+    public void buida() {
+        java.util.Arrays.fill(claus, 0);
+        java.util.Arrays.fill(dades, 0);
+    }
+
+    /**
+     * Busca una posición.
+     *
+     * @param clau clave Zobrist de la posición
+     * @return los datos empaquetados, o 0 si la posición no está
+     */
+    public long consulta(long clau) {
+        int i = (int) clau & mascara & ~1;
+        long d = dades[i];
+        if (d != 0 && (claus[i] ^ d) == clau) {
+            return d;
+        }
+        d = dades[i + 1];
+        if (d != 0 && (claus[i + 1] ^ d) == clau) {
+            return d;
+        }
+        return 0;
+    }
+
+    /**
+     * Indica si el cubo de una posición está lleno. Tras una consulta
+     * fallida quiere decir que otras posiciones ocupan su sitio (colisión).
+     *
+     * @param clau clave Zobrist de la posición
+     * @return cierto si las dos entradas del cubo están ocupadas
+     */
+    public boolean ple(long clau) {
+        int i = (int) clau & mascara & ~1;
+        return dades[i] != 0 && dades[i + 1] != 0;
+    }
+
+    /**
+     * Guarda el resultado de buscar una posición.
+     *
+     * @param clau clave Zobrist de la posición
+     * @param profunditat profundidad restante con la que se buscó
+     * @param cota {@link #EXACTE}, {@link #COTA_INFERIOR} o {@link #COTA_SUPERIOR}
+     * @param puntuacio valor obtenido
+     * @param moviment casilla del mejor movimiento, o -1
+     */
+    public void guarda(long clau, int profunditat, int cota, int puntuacio, int moviment) {
+        int i = (int) clau & mascara & ~1;
+        long d0 = dades[i];
+        long d1 = dades[i + 1];
+        int desti;
+        long previ;
+        if (d0 == 0 || (claus[i] ^ d0) == clau) {
+            desti = i;
+            previ = d0;
+        } else if (d1 == 0 || (claus[i + 1] ^ d1) == clau) {
+            desti = i + 1;
+            previ = d1;
+        } else {
+            desti = valorReemplacament(d0) <= valorReemplacament(d1) ? i : i + 1;
+            previ = 0;
+        }
+        // Conservar el mejor movimiento conocido si el nuevo resultado no trae ninguno
+        if (moviment < 0 && previ != 0) {
+            moviment = moviment(previ);
+        }
+        long dada = empaqueta(profunditat, cota, puntuacio, moviment);
+        claus[desti] = clau ^ dada;
+        dades[desti] = dada;
+    }
+
+    /**
+     * Prioridad para conservar una entrada: las de búsquedas anteriores
+     * pierden valor según su antigüedad.
+     */
+    private int valorReemplacament(long d) {
+        int antiguitat = (edat - edat(d)) & 0xFF;
+        return profunditat(d) - 8 * antiguitat;
+    }
+
+    private long empaqueta(int profunditat, int cota, int puntuacio, int moviment) {
+        return (puntuacio & 0xFFFFFFFFL)
+                | ((long) ((moviment + 1) & 0xFFF) << SHIFT_MOVIMENT)
+                | ((long) (profunditat & 0xFF) << SHIFT_PROFUNDITAT)
+                | ((long) (cota & 0x3) << SHIFT_COTA)
+                | ((long) edat << SHIFT_EDAT)
+                | BIT_VALID;
+    }
+
+    public static int puntuacio(long d) {
+        return (int) d;
+    }
+
+    public static int moviment(long d) {
+        return (int) ((d >>> SHIFT_MOVIMENT) & 0xFFF) - 1;
+    }
+
+    public static int profunditat(long d) {
+        return (int) ((d >>> SHIFT_PROFUNDITAT) & 0xFF);
+    }
+
+    public static int cota(long d) {
+        return (int) ((d >>> SHIFT_COTA) & 0x3);
+    }
+
+    private static int edat(long d) {
+        return (int) ((d >>> SHIFT_EDAT) & 0xFF);
+    }
+}